@@ -0,0 +1,130 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deterministic check of the Adjudicator. Each line of the file is a
+ * position in the TacticalSuite format with the expected results in place
+ * of moves:
+ *
+ *   board side; result r; fives r; id "name"
+ *
+ * where r is white, black, draw or open (not decided yet). result is what a
+ * plain Adjudicator must decide and fives what one with creditFives must,
+ * the same as result if left out. Prints a line per position and
+ * configuration and exits with status 1 if any was decided otherwise.
+ *
+ * Usage: java AdjudicationCheck file
+ **/
+class AdjudicationCheck {
+
+	/**
+	 * One position and its expected results
+	 */
+	static class Case {
+		TacticalSuite.Position position;
+		String result;
+		String fives;
+	}
+
+	static List<Case> load(String file) throws IOException {
+		List<Case> cases = new ArrayList<Case>();
+		int number = 0;
+		for (String line : Files.readAllLines(Paths.get(file))) {
+			number++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+			try {
+				cases.add(parse(line));
+			} catch (RuntimeException e) {
+				throw new IOException(file + ":" + number + ": " + e.getMessage());
+			}
+		}
+		return cases;
+	}
+
+	static Case parse(String line) {
+		Case test = new Case();
+		// the fields of our own are taken out, the rest is a suite position
+		StringBuilder rest = new StringBuilder();
+		for (String field : line.split(";")) {
+			String[] words = field.trim().split("\\s+", 2);
+			if (words[0].equals("result"))
+				test.result = words[1].trim();
+			else if (words[0].equals("fives"))
+				test.fives = words[1].trim();
+			else
+				rest.append(field).append(';');
+		}
+		if (test.result == null)
+			throw new IllegalArgumentException("no result");
+		if (test.fives == null)
+			test.fives = test.result;
+		test.position = TacticalSuite.parse(rest.toString());
+		return test;
+	}
+
+	/**
+	 * @return the position as a board, its stones played in turn
+	 */
+	static FastBoard board(TacticalSuite.Position position) {
+		List<Move> white = new ArrayList<Move>();
+		List<Move> black = new ArrayList<Move>();
+		for (int row = 0; row < GomokuBoard.ROWS; row++) {
+			for (int col = 0; col < GomokuBoard.COLS; col++) {
+				if (position.board[row][col] == Color.white)
+					white.add(new Move(row, col));
+				else if (position.board[row][col] == Color.black)
+					black.add(new Move(row, col));
+			}
+		}
+		if (white.size() != black.size() + (position.toMove == Color.white ? 0 : 1))
+			throw new IllegalArgumentException(position.id + ": stone counts do not fit the side to move");
+		FastBoard board = new FastBoard();
+		for (int i = 0; i < white.size(); i++) {
+			board.makeMove(white.get(i), Color.white);
+			if (i < black.size())
+				board.makeMove(black.get(i), Color.black);
+		}
+		if (board.getWinner() != null)
+			throw new IllegalArgumentException(position.id + ": the game is already over");
+		return board;
+	}
+
+	static String name(Color result) {
+		if (result == null)
+			return "open";
+		if (result == Color.blue)
+			return "draw";
+		return (result == Color.white) ? "white" : "black";
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: java AdjudicationCheck file");
+			return;
+		}
+		int failures = 0;
+		for (Case test : load(args[0])) {
+			FastBoard board = board(test.position);
+			for (boolean credit : new boolean[] { false, true }) {
+				Adjudicator adjudicator = new Adjudicator();
+				adjudicator.creditFives = credit;
+				String expected = credit ? test.fives : test.result;
+				String decided = name(adjudicator.decide(board));
+				boolean passed = decided.equals(expected);
+				System.out.printf("%s%-36s %-6s %s%n", passed ? "ok    " : "FAIL  ", test.position.id,
+						credit ? "fives" : "", passed ? decided : decided + ", expected " + expected);
+				if (!passed)
+					failures++;
+			}
+		}
+		System.out.println(failures == 0 ? "all positions decided as expected" : failures + " positions decided otherwise");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+} // end AdjudicationCheck class
@@ -0,0 +1,101 @@
+import java.awt.Color;
+
+/**
+ * Decides batch games early, once the result can no longer change. A game
+ * is won for the side to move when it can win by continuous fours: every
+ * four forces the one reply that blocks it, so a line of fours ending in a
+ * double four or five wins whatever the defence. A five the side to move
+ * could make on this move is left on the board to be played, since a player
+ * that misses it or runs out of time has not won; with creditFives it is
+ * counted as a win as well, ending such games a move sooner. It is lost for
+ * the side to move when the other side already has two fives to make and
+ * the side to move has none. It is drawn when, counting the moves each side
+ * has left, no five cell window can still be filled by either side, which
+ * also covers FastBoard's own check that every window holds both colours.
+ * The search for fours gives up after nodeBudget positions and the game
+ * then goes on.
+ **/
+class Adjudicator {
+
+	// longest run of fours looked for, in moves of the attacker
+	static final int MAX_FOURS = 8;
+
+	int nodeBudget = 2000;
+	// a five the side to move can make wins without being played
+	boolean creditFives;
+	long nodes;
+	private int left;
+
+	/**
+	 * @return the winner, Color.blue for a draw, or null if the game is still open
+	 */
+	Color decide(FastBoard board) {
+		Color turn = board.getTurn();
+		Color other = (turn == Color.white) ? Color.black : Color.white;
+		long own = (turn == Color.white) ? board.white : board.black;
+		long opp = (turn == Color.white) ? board.black : board.white;
+		if (Threats.fives(own, opp) != 0)
+			return creditFives ? turn : null;
+		if (Long.bitCount(Threats.fives(opp, own)) >= 2)
+			return other;
+		if (drawn(board))
+			return Color.blue;
+		left = nodeBudget;
+		for (int moves = 2; moves <= MAX_FOURS && left > 0; moves++) {
+			if (fours(own, opp, moves))
+				return turn;
+		}
+		return null;
+	}
+
+	/**
+	 * @return true if no window can be filled by the side it is open for
+	 *         with the moves that side has left
+	 */
+	static boolean drawn(FastBoard board) {
+		int empty = 64 - board.getMoveCount();
+		// the side to move gets the odd cell
+		int toMove = (empty + 1) / 2;
+		int whiteLeft = (board.getTurn() == Color.white) ? toMove : empty - toMove;
+		int blackLeft = empty - whiteLeft;
+		for (int run = 0; run < FastBoard.RUNS; run++) {
+			if (board.blackRuns[run] == 0 && 5 - board.whiteRuns[run] <= whiteLeft)
+				return false;
+			if (board.whiteRuns[run] == 0 && 5 - board.blackRuns[run] <= blackLeft)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if own, to move with no five of its own to make, wins by
+	 *         fours within the given number of moves
+	 */
+	boolean fours(long own, long opp, int moves) {
+		if (--left < 0)
+			return false;
+		nodes++;
+		if (Threats.fives(own, opp) != 0)
+			return true;
+		if (moves <= 1)
+			return false;
+		long candidates = Threats.fours(own, opp);
+		// facing a five, a four only helps if it blocks it as well
+		long threats = Threats.fives(opp, own);
+		if (threats != 0)
+			candidates &= threats;
+		for (long bits = candidates; bits != 0; bits &= bits - 1) {
+			long four = own | (bits & -bits);
+			// a four that leaves the defender a five to make does not force anything
+			if (Threats.fives(opp, four) != 0)
+				continue;
+			long blocks = Threats.fives(four, opp);
+			if (Long.bitCount(blocks) >= 2)
+				return true;
+			if (blocks != 0 && fours(four, opp | blocks, moves - 1))
+				return true;
+		}
+		return false;
+	}
+
+} // end Adjudicator class
@@ -0,0 +1,81 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of one depth of a multi-PV search: the best root moves found,
+ * best first, each with its score and principal variation. Scores are from
+ * white's point of view, like Player.lastScore.
+ **/
+class Analysis {
+
+	/**
+	 * One root move and the line of best play that follows it
+	 */
+	static class Line {
+		final int row;
+		final int col;
+		final int score;
+		// cells (row * 8 + col) from the root move on, alternating colours
+		final int[] pv;
+
+		Line(int row, int col, int score, int[] pv) {
+			this.row = row;
+			this.col = col;
+			this.score = score;
+			this.pv = pv;
+		}
+
+		Move move() {
+			return new Move(row, col);
+		}
+
+		public String toString() {
+			StringBuilder text = new StringBuilder();
+			text.append(score);
+			for (int cell : pv)
+				text.append(" ").append(cell / 8).append(",").append(cell % 8);
+			return text.toString();
+		}
+	}
+
+	final int depth;
+	final List<Line> lines = new ArrayList<Line>();
+	long nodes;
+	long micros;
+
+	Analysis(int depth) {
+		this.depth = depth;
+	}
+
+	/**
+	 * @return the best line, null if there were no moves
+	 */
+	Line best() {
+		return lines.isEmpty() ? null : lines.get(0);
+	}
+
+	String toJson() {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"depth\":").append(depth).append(",\"nodes\":").append(nodes).append(",\"millis\":")
+				.append(micros / 1000.0).append(",\"lines\":[");
+		for (int i = 0; i < lines.size(); i++) {
+			Line line = lines.get(i);
+			json.append(i > 0 ? "," : "").append("{\"row\":").append(line.row).append(",\"col\":").append(line.col)
+					.append(",\"score\":").append(line.score).append(",\"pv\":[");
+			for (int j = 0; j < line.pv.length; j++)
+				json.append(j > 0 ? "," : "").append("[").append(line.pv[j] / 8).append(",").append(line.pv[j] % 8)
+						.append("]");
+			json.append("]}");
+		}
+		return json.append("]}").toString();
+	}
+
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		text.append("depth ").append(depth).append(", ").append(nodes).append(" nodes\n");
+		for (int i = 0; i < lines.size(); i++)
+			text.append(i + 1).append(". ").append(lines.get(i)).append("\n");
+		return text.toString();
+	}
+
+} // end Analysis class
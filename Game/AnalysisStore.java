@@ -0,0 +1,276 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Search results for root positions kept in a memory-mapped file, so a
+ * position searched once is a lookup in every later game, run and process.
+ * Positions are keyed by their canonical hash with the side to move and the
+ * engine's fingerprint mixed in, so all 8 symmetric versions share an entry
+ * while players with other evaluators, weights or search flags never see
+ * each other's results. The best move is kept as it is in the canonical
+ * image and mapped back on the way out.
+ *
+ * Slots are laid out like the TranspositionTable, the hash xored with the
+ * entry next to the entry itself in buckets of four, and read and written
+ * with opaque access. A reader in another process that races the writer
+ * sees a mismatched pair and takes it as a miss. Only one process writes:
+ * whoever opens the file first takes an exclusive lock on it and everybody
+ * else maps it read only. A store keeps the deeper of two results for the
+ * same position and otherwise replaces the shallowest slot of the bucket.
+ *
+ * The file is little endian: the magic "GAS2", the number of slots, then
+ * the slots, 16 bytes each. Files from before engines were keyed ("GAS1")
+ * are refused. Entries are packed as in TranspositionTable.
+ *
+ * Usage: java AnalysisStore file [size slots] [fill games] [depth d]
+ **/
+class AnalysisStore implements AutoCloseable {
+
+	static final int MAGIC = ('G' << 24) | ('A' << 16) | ('S' << 8) | '2';
+	static final int HEADER = 16;
+	static final int WAYS = 4;
+
+	private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class,
+			ByteOrder.LITTLE_ENDIAN);
+
+	// the store named by -Dstore, shared by every Player in this JVM, or null
+	private static AnalysisStore shared;
+	private static boolean sharedOpened;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final FileLock lock;
+	private final int bucketMask;
+	private final int slots;
+
+	/**
+	 * Opens the file, creating it with the given number of slots if it does
+	 * not exist yet; writable if no other process has it open for writing
+	 */
+	AnalysisStore(Path path, int size) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		FileLock exclusive;
+		try {
+			exclusive = channel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			exclusive = null;
+		}
+		lock = exclusive;
+		if (channel.size() == 0 && lock != null) {
+			int count = Math.max(WAYS, Integer.highestOneBit(Math.max(1, size - 1)) << 1);
+			MappedByteBuffer fresh = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + 16L * count);
+			fresh.order(ByteOrder.LITTLE_ENDIAN).putInt(0, MAGIC).putInt(4, count);
+			fresh.force();
+		}
+		if (channel.size() < HEADER)
+			throw new IOException(path + " is being created by another process");
+		buffer = channel.map(lock != null ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0,
+				channel.size());
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.getInt(0) == (MAGIC & ~0xFF | '1'))
+			throw new IOException(path + " was stored without engine fingerprints, delete it to start again");
+		if (buffer.getInt(0) != MAGIC || HEADER + 16L * buffer.getInt(4) != channel.size())
+			throw new IOException(path + " is not an analysis store");
+		slots = buffer.getInt(4);
+		bucketMask = slots / WAYS - 1;
+	}
+
+	/**
+	 * @return the store named by -Dstore, opened on first use, or null without one
+	 */
+	static synchronized AnalysisStore shared() {
+		if (!sharedOpened) {
+			sharedOpened = true;
+			String file = System.getProperty("store");
+			if (file != null) {
+				try {
+					shared = new AnalysisStore(Paths.get(file), Integer.getInteger("storeSize", 1 << 20));
+				} catch (IOException e) {
+					System.err.println("Cannot open analysis store " + file + ": " + e);
+				}
+			}
+		}
+		return shared;
+	}
+
+	boolean isWritable() {
+		return lock != null;
+	}
+
+	int size() {
+		return slots;
+	}
+
+	/**
+	 * @param engine fingerprint of the player searching the position
+	 */
+	static long key(long white, long black, Color toMove, long engine) {
+		long hash = Zobrist.canonical(white, black) ^ Zobrist.mix(engine);
+		return (toMove == Color.WHITE) ? hash : hash ^ Zobrist.BLACK_TO_MOVE;
+	}
+
+	private long slot(int index) {
+		return HEADER + 16L * index;
+	}
+
+	private long entryAt(int index) {
+		return (long) LONG.getOpaque(buffer, (int) slot(index) + 8);
+	}
+
+	private long keyAt(int index) {
+		return (long) LONG.getOpaque(buffer, (int) slot(index));
+	}
+
+	private int bucket(long key) {
+		return (int) (key >>> 32) & bucketMask;
+	}
+
+	/**
+	 * @return the entry for the position with its move as a cell of this
+	 *         position rather than of the canonical image, or
+	 *         TranspositionTable.MISS
+	 */
+	long probe(long white, long black, Color toMove, long engine) {
+		long key = key(white, black, toMove, engine);
+		int first = bucket(key) * WAYS;
+		for (int index = first; index < first + WAYS; index++) {
+			long entry = entryAt(index);
+			if (entry != TranspositionTable.MISS && (keyAt(index) ^ entry) == key) {
+				int move = TranspositionTable.move(entry);
+				if (move == TranspositionTable.NO_MOVE)
+					return entry;
+				// the cell whose image is the stored one
+				int symmetry = Zobrist.canonicalSymmetry(white, black);
+				for (int cell = 0; cell < 64; cell++) {
+					if (Zobrist.SYMMETRY[symmetry][cell] == move) {
+						return TranspositionTable.pack(TranspositionTable.depth(entry),
+								TranspositionTable.bound(entry), TranspositionTable.score(entry), cell, 0);
+					}
+				}
+			}
+		}
+		return TranspositionTable.MISS;
+	}
+
+	/**
+	 * Stores a search result, ignored when the store is read only
+	 *
+	 * @param move cell of the best move in this position
+	 */
+	void store(long white, long black, Color toMove, long engine, int depth, int bound, int score, int move) {
+		if (lock == null)
+			return;
+		long key = key(white, black, toMove, engine);
+		int stored = (move == TranspositionTable.NO_MOVE) ? move
+				: Zobrist.SYMMETRY[Zobrist.canonicalSymmetry(white, black)][move];
+		long entry = TranspositionTable.pack(depth, bound, score, stored, 0);
+		int first = bucket(key) * WAYS;
+		int victim = first;
+		int shallowest = Integer.MAX_VALUE;
+		for (int index = first; index < first + WAYS; index++) {
+			long old = entryAt(index);
+			if (old == TranspositionTable.MISS || (keyAt(index) ^ old) == key) {
+				if (old != TranspositionTable.MISS && TranspositionTable.depth(old) > depth)
+					return;
+				victim = index;
+				break;
+			}
+			if (TranspositionTable.depth(old) < shallowest) {
+				shallowest = TranspositionTable.depth(old);
+				victim = index;
+			}
+		}
+		LONG.setOpaque(buffer, (int) slot(victim) + 8, entry);
+		LONG.setOpaque(buffer, (int) slot(victim), key ^ entry);
+	}
+
+	/**
+	 * @return the number of slots in use
+	 */
+	int count() {
+		int used = 0;
+		for (int index = 0; index < slots; index++) {
+			if (entryAt(index) != TranspositionTable.MISS)
+				used++;
+		}
+		return used;
+	}
+
+	public void close() throws IOException {
+		if (lock != null) {
+			buffer.force();
+			lock.release();
+		}
+		channel.close();
+	}
+
+	/**
+	 * Plays games between two Players sharing the store from random openings,
+	 * filling it with the positions they search
+	 */
+	void fill(int games, int depth) {
+		Player player = new Player();
+		player.verbose = false;
+		player.depth = depth;
+		player.store = this;
+		Random random = new Random(games);
+		for (int game = 0; game < games; game++) {
+			FastBoard board = new FastBoard();
+			int stones = 2 + random.nextInt(5);
+			for (int i = 0; i < stones; i++) {
+				int row, col;
+				do {
+					row = 2 + random.nextInt(4);
+					col = 2 + random.nextInt(4);
+				} while (board.getBoardView()[row][col] != null);
+				board.makeMove(new Move(row, col), board.getTurn());
+			}
+			while (board.getWinner() == null) {
+				Color turn = board.getTurn();
+				board.makeMove(player.chooseMove(board.getPublicBoard(), turn), turn);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: java AnalysisStore file [size slots] [fill games] [depth d]");
+			return;
+		}
+		int size = 1 << 20, games = 0, depth = 5;
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("size"))
+				size = Integer.parseInt(args[++i]);
+			else if (args[i].equals("fill"))
+				games = Integer.parseInt(args[++i]);
+			else if (args[i].equals("depth"))
+				depth = Integer.parseInt(args[++i]);
+		}
+		try (AnalysisStore store = new AnalysisStore(Paths.get(args[0]), size)) {
+			if (games > 0) {
+				if (!store.isWritable()) {
+					System.out.println(args[0] + " is open for writing in another process");
+					return;
+				}
+				long start = System.nanoTime();
+				store.fill(games, depth);
+				System.out.printf("%d games at depth %d in %.1fs%n", games, depth, (System.nanoTime() - start) / 1e9);
+			}
+			System.out.printf("%s: %d of %d slots used%s%n", args[0], store.count(), store.size(),
+					store.isWritable() ? "" : ", read only");
+		}
+	}
+
+} // end AnalysisStore class
@@ -0,0 +1,18 @@
+/**
+ * Marks a player that can be cut off at any time. While chooseMove runs,
+ * the player publishes the best move it has found so far, for example after
+ * every completed depth of an iterative deepening search, so a search may
+ * use all of its time. When the time is up the referee interrupts the
+ * player and plays the published move instead of waiting.
+ **/
+interface AnytimePlayer {
+
+	/**
+	 * May be called from any thread while chooseMove runs, so the move is
+	 * published through a volatile field or similar without locking
+	 *
+	 * @return the best move of the current chooseMove call so far, or null if none yet
+	 */
+	Move bestSoFar();
+
+} // end AnytimePlayer interface
@@ -0,0 +1,19 @@
+/**
+ * Player in anytime mode: deepens one ply at a time until its own time
+ * limit, or a referee's deadline if that comes first, stops it and then
+ * plays the move of the deepest completed depth. The limit is -DmoveTime
+ * milliseconds per move, 1000 by default, so under any referee or tool
+ * that does not cut players off it still answers in time.
+ **/
+class DeepeningPlayer extends Player {
+
+	DeepeningPlayer() {
+		anytime = true;
+		depth = TranspositionTable.MAX_DEPTH;
+		timeLimit = Long.getLong("moveTime", 1000);
+		verbose = false;
+		// each depth starts from the moves the one before stored
+		table = new TranspositionTable(1 << 20);
+	}
+
+} // end DeepeningPlayer class
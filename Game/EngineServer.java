@@ -0,0 +1,251 @@
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Long lived engine process for external match managers. Wraps any
+ * GomokuPlayer and speaks a Gomocup style line protocol on stdin and stdout,
+ * so one JVM, one player instance and its warm caches serve every game:
+ *
+ *   START 8          new game, answers OK (only the 8x8 board is supported)
+ *   RESTART          same as START on the current size
+ *   BEGIN            engine plays first (white), answers x,y
+ *   TURN x,y         opponent's move, answers the engine's x,y
+ *   BOARD            followed by lines x,y,who (1 engine, 2 opponent) and DONE,
+ *                    answers the engine's move in that position
+ *   INFO key value   accepted and ignored
+ *   ABOUT            name and version, and the author given by -Dauthor if any
+ *   END              exits
+ *
+ * x is the column and y the row. Anything the player prints is sent to
+ * stderr so it cannot corrupt the protocol. Before reading the first command
+ * the player searches a few random positions, so class loading and JIT
+ * compilation are done before the first real move is asked for.
+ *
+ * Usage: java EngineServer PlayerClass [warmup n]
+ **/
+class EngineServer {
+
+	final GomokuPlayer player;
+	final PrintStream out;
+	final Color[][] board = new Color[GomokuBoard.ROWS][GomokuBoard.COLS];
+	Color me = Color.black;
+	// set once the engine knows its colour for the current game
+	boolean started;
+
+	EngineServer(GomokuPlayer player, PrintStream out) {
+		this.player = player;
+		this.out = out;
+		if (player instanceof Player) {
+			((Player) player).verbose = false;
+			((Player) player).table = new TranspositionTable(1 << 20);
+		}
+	}
+
+	/**
+	 * Asks for moves in the given number of random positions, leaving the
+	 * board empty again
+	 */
+	void warmUp(int searches) {
+		Random random = new Random(1);
+		for (int i = 0; i < searches; i++) {
+			clear();
+			int stones = 2 + random.nextInt(12);
+			for (int s = 0; s < stones; s++) {
+				int row, col;
+				do {
+					row = random.nextInt(GomokuBoard.ROWS);
+					col = random.nextInt(GomokuBoard.COLS);
+				} while (board[row][col] != null);
+				board[row][col] = (s % 2 == 0) ? Color.white : Color.black;
+			}
+			try {
+				player.chooseMove(copy(), (stones % 2 == 0) ? Color.white : Color.black);
+			} catch (Exception e) {
+				// the player may legitimately refuse a random position
+			}
+		}
+		clear();
+	}
+
+	void clear() {
+		for (Color[] row : board)
+			Arrays.fill(row, null);
+		started = false;
+	}
+
+	Color[][] copy() {
+		Color[][] copy = new Color[GomokuBoard.ROWS][];
+		for (int row = 0; row < GomokuBoard.ROWS; row++)
+			copy[row] = board[row].clone();
+		return copy;
+	}
+
+	Color opponent() {
+		return (me == Color.white) ? Color.black : Color.white;
+	}
+
+	/**
+	 * Parses "x,y" into a Move, or null if it is malformed or off the board
+	 */
+	static Move parse(String text) {
+		String[] parts = text.trim().split(",");
+		if (parts.length < 2)
+			return null;
+		try {
+			int col = Integer.parseInt(parts[0].trim());
+			int row = Integer.parseInt(parts[1].trim());
+			if (row < 0 || row >= GomokuBoard.ROWS || col < 0 || col >= GomokuBoard.COLS)
+				return null;
+			return new Move(row, col);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Asks the player for a move, plays it and answers it
+	 */
+	void think() {
+		Move move;
+		try {
+			move = player.chooseMove(copy(), me);
+		} catch (Exception e) {
+			move = null;
+		}
+		if (move == null || move.row < 0 || move.row >= GomokuBoard.ROWS || move.col < 0
+				|| move.col >= GomokuBoard.COLS || board[move.row][move.col] != null) {
+			out.println("ERROR player returned an illegal move " + move);
+			return;
+		}
+		board[move.row][move.col] = me;
+		out.println(move.col + "," + move.row);
+	}
+
+	/**
+	 * Handles one command line
+	 *
+	 * @return false once the manager has asked the engine to stop
+	 */
+	boolean handle(String line, BufferedReader in) throws IOException {
+		String[] words = line.trim().split("\\s+", 2);
+		String command = words[0].toUpperCase();
+		String argument = (words.length > 1) ? words[1] : "";
+		switch (command) {
+		case "START":
+			if (!argument.trim().equals(String.valueOf(GomokuBoard.ROWS))) {
+				out.println("ERROR only board size " + GomokuBoard.ROWS + " is supported");
+				break;
+			}
+			clear();
+			out.println("OK");
+			break;
+		case "RESTART":
+			clear();
+			out.println("OK");
+			break;
+		case "BEGIN":
+			me = Color.white;
+			started = true;
+			think();
+			break;
+		case "TURN":
+			Move move = parse(argument);
+			if (move == null || board[move.row][move.col] != null) {
+				out.println("ERROR illegal move " + argument);
+				break;
+			}
+			if (!started) {
+				// the opponent moved first so it is white
+				me = Color.black;
+				started = true;
+			}
+			board[move.row][move.col] = opponent();
+			think();
+			break;
+		case "BOARD":
+			readBoard(in);
+			think();
+			break;
+		case "INFO":
+			break;
+		case "ABOUT":
+			String author = System.getProperty("author");
+			out.println("name=\"" + player.getClass().getName() + "\", version=\"1.0\""
+					+ (author != null ? ", author=\"" + author + "\"" : ""));
+			break;
+		case "END":
+			return false;
+		case "":
+			break;
+		default:
+			out.println("UNKNOWN " + command);
+		}
+		return true;
+	}
+
+	/**
+	 * Reads a whole position up to DONE. White moves first, so the engine is
+	 * white exactly when both sides have played the same number of stones
+	 */
+	void readBoard(BufferedReader in) throws IOException {
+		int[] cells = new int[GomokuBoard.ROWS * GomokuBoard.COLS];
+		int[] who = new int[cells.length];
+		int count = 0, mine = 0, theirs = 0;
+		for (String line = in.readLine(); line != null && !line.trim().equalsIgnoreCase("DONE"); line = in.readLine()) {
+			Move move = parse(line);
+			String[] parts = line.trim().split(",");
+			if (move == null || parts.length < 3 || count == cells.length)
+				continue;
+			int owner = parts[2].trim().equals("1") ? 1 : 2;
+			cells[count] = move.row * GomokuBoard.COLS + move.col;
+			who[count++] = owner;
+			if (owner == 1)
+				mine++;
+			else
+				theirs++;
+		}
+		clear();
+		me = (mine == theirs) ? Color.white : Color.black;
+		started = true;
+		for (int i = 0; i < count; i++)
+			board[cells[i] / GomokuBoard.COLS][cells[i] % GomokuBoard.COLS] = (who[i] == 1) ? me : opponent();
+	}
+
+	void serve(BufferedReader in) throws IOException {
+		for (String line = in.readLine(); line != null; line = in.readLine()) {
+			if (!handle(line, in))
+				break;
+			out.flush();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.out.println("Usage: java EngineServer PlayerClass [warmup n]");
+			return;
+		}
+		int warmup = 20;
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("warmup"))
+				warmup = Integer.parseInt(args[++i]);
+		}
+		System.setProperty("java.awt.headless", "true");
+		// keep stdout for the protocol and send everything else to stderr
+		PrintStream protocol = new PrintStream(new FileOutputStream(FileDescriptor.out), true);
+		System.setOut(System.err);
+		EngineServer server = new EngineServer(HeadlessReferee.load(args[0]), protocol);
+		long start = System.nanoTime();
+		server.warmUp(warmup);
+		System.err.printf("%s ready after %d warm-up searches in %.2fs%n", args[0], warmup,
+				(System.nanoTime() - start) / 1e9);
+		server.serve(new BufferedReader(new InputStreamReader(System.in)));
+	}
+
+} // end EngineServer class
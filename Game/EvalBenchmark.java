@@ -0,0 +1,131 @@
+import java.awt.Color;
+import java.util.Random;
+
+/**
+ * Compares the cost of the evaluation functions on random positions, and the
+ * nodes per second of Player's search with each of them. Run with
+ * --add-modules jdk.incubator.vector to include the vector window counts.
+ * 
+ * Usage: java EvalBenchmark [positions n]
+ **/
+class EvalBenchmark {
+
+	static Color[][][] positions(int count, long seed) {
+		Random random = new Random(seed);
+		Color[][][] boards = new Color[count][][];
+		for (int i = 0; i < count; i++) {
+			Color[][] board = new Color[8][8];
+			int stones = 6 + random.nextInt(20);
+			for (int s = 0; s < stones; s++) {
+				int row = random.nextInt(8), col = random.nextInt(8);
+				if (board[row][col] == null)
+					board[row][col] = (s % 2 == 0) ? Color.WHITE : Color.BLACK;
+			}
+			boards[i] = board;
+		}
+		return boards;
+	}
+
+	static void report(String name, long start, long count, long checksum) {
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%-28s %12.0f per second  (checksum %d)%n", name, count / seconds, checksum);
+	}
+
+	public static void main(String[] args) {
+		int count = 2000;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("positions"))
+				count = Integer.parseInt(args[++i]);
+		}
+		Color[][][] boards = positions(count, 42);
+		Player player = new Player();
+		player.verbose = false;
+		LineCache[] caches = new LineCache[count];
+		for (int i = 0; i < count; i++)
+			caches[i] = new LineCache(boards[i]);
+		// a random network costs the same to evaluate as a trained one
+		NeuralEvaluator.Network network = (NeuralPlayer.NETWORK != null) ? NeuralPlayer.NETWORK
+				: NeuralEvaluator.Network.random(64, 16, 1);
+		NeuralEvaluator neural = new NeuralEvaluator(network);
+		WindowEvaluator scalar = new WindowEvaluator();
+		WindowEvaluator windows = WindowEvaluator.create();
+		if (windows.getClass() == WindowEvaluator.class)
+			windows = scalar;
+
+		for (int round = 0; round < 3; round++) {
+			System.out.println("round " + round);
+			long sum = 0, start = System.nanoTime();
+			for (Color[][] board : boards)
+				sum += player.evaluate(board, Color.WHITE);
+			report("strings", start, count, sum);
+
+			sum = 0;
+			start = System.nanoTime();
+			for (Color[][] board : boards)
+				sum += new LineCache(board).evaluate(Color.WHITE);
+			report("line cache, rebuilt", start, count, sum);
+
+			// one move made, evaluated and taken back per position
+			sum = 0;
+			start = System.nanoTime();
+			for (int r = 0; r < 100; r++) {
+				for (LineCache lines : caches) {
+					int cell = Long.numberOfTrailingZeros(~(lines.white | lines.black));
+					lines.makeMove(cell, LineCache.WHITE);
+					sum += lines.evaluate(Color.WHITE);
+					lines.unmakeMove(cell);
+				}
+			}
+			report("line cache, incremental", start, 100L * count, sum);
+
+			sum = 0;
+			start = System.nanoTime();
+			for (int r = 0; r < 100; r++) {
+				for (LineCache lines : caches)
+					sum += scalar.evaluate(lines.white, lines.black);
+			}
+			report("windows, scalar bitboards", start, 100L * count, sum);
+
+			sum = 0;
+			start = System.nanoTime();
+			for (int r = 0; r < 100; r++) {
+				for (LineCache lines : caches)
+					sum += windows.evaluate(lines.white, lines.black);
+			}
+			report("windows, " + (windows == scalar ? "no vector module" : "vector"), start, 100L * count, sum);
+
+			sum = 0;
+			start = System.nanoTime();
+			for (int r = 0; r < 100; r++) {
+				for (LineCache lines : caches) {
+					neural.reset(lines);
+					int cell = Long.numberOfTrailingZeros(~(lines.white | lines.black));
+					neural.makeMove(cell, LineCache.WHITE);
+					sum += neural.evaluate();
+					neural.unmakeMove(cell, LineCache.WHITE);
+				}
+			}
+			report("neural, reset + incremental", start, 100L * count, sum);
+		}
+
+		search("search, line cache", player, boards);
+		Player neuralPlayer = new NeuralPlayer(network);
+		neuralPlayer.verbose = false;
+		search("search, neural", neuralPlayer, boards);
+		Player windowPlayer = new Player();
+		windowPlayer.verbose = false;
+		windowPlayer.evaluator = windows;
+		search("search, windows", windowPlayer, boards);
+	}
+
+	static void search(String name, Player player, Color[][][] boards) {
+		long nodes = 0, start = System.nanoTime();
+		for (int i = 0; i < 20; i++) {
+			player.chooseMove(boards[i], (i % 2 == 0) ? Color.WHITE : Color.BLACK);
+			nodes += player.nodes;
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%-28s %12.0f nodes per second (%d nodes)%n", name, nodes / seconds, nodes);
+	}
+
+} // end EvalBenchmark class
@@ -0,0 +1,94 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Direct mapped cache of evaluations keyed by position hash. Each slot is a
+ * single long holding the top 30 bits of the hash, the two five-in-a-row
+ * flags and the score from white's point of view, so it can be shared by
+ * several search threads without locking: a slot is read and written whole
+ * and a racing overwrite just shows up as a miss.
+ **/
+class EvalCache {
+
+	static final long MISS = 0;
+
+	private static final long CHECK_MASK = 0xFFFFFFFC00000000L;
+	private static final long WHITE_FIVE = 1L << 32;
+	private static final long BLACK_FIVE = 1L << 33;
+	private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(long[].class);
+
+	private final long[] table;
+	private final int mask;
+	private final LongAdder probes = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+
+	/**
+	 * @param size number of slots, rounded up to a power of two
+	 */
+	EvalCache(int size) {
+		int slots = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+		table = new long[slots];
+		mask = slots - 1;
+	}
+
+	/**
+	 * @return the packed entry for this hash, or MISS
+	 */
+	long probe(long hash) {
+		probes.increment();
+		long entry = (long) SLOT.getOpaque(table, (int) hash & mask);
+		if (entry != MISS && ((entry ^ hash) & CHECK_MASK) == 0) {
+			hits.increment();
+			return entry;
+		}
+		return MISS;
+	}
+
+	/**
+	 * @return the packed entry that was stored
+	 */
+	long store(long hash, int score, boolean whiteFive, boolean blackFive) {
+		long entry = (hash & CHECK_MASK) | (score & 0xFFFFFFFFL);
+		if (whiteFive)
+			entry |= WHITE_FIVE;
+		if (blackFive)
+			entry |= BLACK_FIVE;
+		SLOT.setOpaque(table, (int) hash & mask, entry);
+		return entry;
+	}
+
+	static int score(long entry) {
+		return (int) entry;
+	}
+
+	static boolean hasFive(long entry) {
+		return (entry & (WHITE_FIVE | BLACK_FIVE)) != 0;
+	}
+
+	static boolean whiteFive(long entry) {
+		return (entry & WHITE_FIVE) != 0;
+	}
+
+	static boolean blackFive(long entry) {
+		return (entry & BLACK_FIVE) != 0;
+	}
+
+	double hitRate() {
+		long total = probes.sum();
+		return total == 0 ? 0 : (double) hits.sum() / total;
+	}
+
+	void clear() {
+		for (int i = 0; i < table.length; i++) {
+			SLOT.setOpaque(table, i, MISS);
+		}
+		probes.reset();
+		hits.reset();
+	}
+
+	public String toString() {
+		return String.format("eval cache: %d probes, %.1f%% hits", probes.sum(), hitRate() * 100);
+	}
+
+} // end EvalCache class
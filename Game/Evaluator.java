@@ -0,0 +1,51 @@
+/**
+ * Scores positions for Player's search in place of the line cache patterns.
+ * An evaluator may keep incremental state, so the search resets it at the
+ * root and tells it about every stone it places and takes back.
+ **/
+interface Evaluator {
+
+	/**
+	 * A new evaluator of the same kind for another search thread, sharing
+	 * anything read only such as weights
+	 */
+	Evaluator copy();
+
+	/**
+	 * Sets up the evaluator for the position held by the line cache
+	 */
+	void reset(LineCache lines);
+
+	void makeMove(int cell, int code);
+
+	void unmakeMove(int cell, int code);
+
+	/**
+	 * @return score of the current position from white's point of view, in
+	 *         the same units as LineCache scores
+	 */
+	int evaluate();
+
+	/**
+	 * Scores the children reached by placing a stone on each of the cells,
+	 * leaving the evaluator as it was. Override when children can be scored
+	 * more cheaply than by making each move
+	 */
+	default void evaluateChildren(int[] cells, int count, int code, int[] scores) {
+		for (int i = 0; i < count; i++) {
+			makeMove(cells[i], code);
+			scores[i] = evaluate();
+			unmakeMove(cells[i], code);
+		}
+	}
+
+	/**
+	 * @return a hash of the kind of evaluator and anything it scores with,
+	 *         such as weights, so stored results are only reused by the same
+	 *         evaluator. Override when an evaluator has settings of its own
+	 */
+	default long fingerprint() {
+		return getClass().getName().hashCode();
+	}
+
+} // end Evaluator interface
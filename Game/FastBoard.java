@@ -0,0 +1,175 @@
+import java.awt.Color;
+
+/**
+ * Headless version of GomokuBoard for batch games. It applies the same rules
+ * and returns the same status strings from makeMove, but keeps a precomputed
+ * cell to runs index so only the runs through the played cell are updated,
+ * and it can hand trusted players its board without copying it.
+ **/
+class FastBoard {
+
+	static final int RUNS = 96;
+
+	// the five cells of every run, and the runs through every cell
+	static final int[][] RUN_CELLS = new int[RUNS][5];
+	static final int[][] CELL_RUNS = new int[64][];
+
+	static {
+		int run = 0;
+		int[][] steps = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+		for (int[] step : steps) {
+			for (int row = 0; row < GomokuBoard.ROWS; row++) {
+				for (int col = 0; col < GomokuBoard.COLS; col++) {
+					int endRow = row + 4 * step[0];
+					int endCol = col + 4 * step[1];
+					if (endRow >= GomokuBoard.ROWS || endCol < 0 || endCol >= GomokuBoard.COLS)
+						continue;
+					for (int i = 0; i < 5; i++) {
+						RUN_CELLS[run][i] = (row + i * step[0]) * 8 + col + i * step[1];
+					}
+					run++;
+				}
+			}
+		}
+		int[] counts = new int[64];
+		for (int[] cells : RUN_CELLS) {
+			for (int cell : cells) {
+				counts[cell]++;
+			}
+		}
+		for (int cell = 0; cell < 64; cell++) {
+			CELL_RUNS[cell] = new int[counts[cell]];
+			counts[cell] = 0;
+		}
+		for (run = 0; run < RUNS; run++) {
+			for (int cell : RUN_CELLS[run]) {
+				CELL_RUNS[cell][counts[cell]++] = run;
+			}
+		}
+	}
+
+	private final Color[][] board = new Color[8][8];
+	final int[] whiteRuns = new int[RUNS];
+	final int[] blackRuns = new int[RUNS];
+	// runs holding stones of both colours, which nobody can complete any more
+	int deadRuns;
+	long white;
+	long black;
+	private Color turn;
+	private Color winner;
+	private int count;
+
+	FastBoard() {
+		init();
+	}
+
+	void init() {
+		for (int row = 0; row < GomokuBoard.ROWS; row++) {
+			for (int col = 0; col < GomokuBoard.COLS; col++) {
+				board[row][col] = null;
+			}
+		}
+		for (int run = 0; run < RUNS; run++) {
+			whiteRuns[run] = blackRuns[run] = 0;
+		}
+		deadRuns = 0;
+		white = black = 0;
+		turn = Color.white;
+		winner = null;
+		count = 0;
+	}
+
+	String makeMove(Move move, Color colour) {
+		Color other = (turn == Color.white) ? Color.black : Color.white;
+		if (winner != null)
+			return "ERROR: Game is already over";
+		if (turn != colour)
+			return "ERROR: It is not your turn";
+		if (move == null) {
+			winner = other;
+			return "Exception or null Move";
+		}
+		int row = move.row;
+		int col = move.col;
+		if (col < 0 || col >= GomokuBoard.COLS || row < 0 || row >= GomokuBoard.ROWS) {
+			winner = other;
+			return "Move out of range";
+		}
+		if (board[row][col] != null) {
+			winner = other;
+			return "Move in occupied cell";
+		}
+		board[row][col] = turn;
+		int cell = row * 8 + col;
+		int[] mine = (turn == Color.white) ? whiteRuns : blackRuns;
+		int[] theirs = (turn == Color.white) ? blackRuns : whiteRuns;
+		if (turn == Color.white)
+			white |= 1L << cell;
+		else
+			black |= 1L << cell;
+		boolean five = false;
+		for (int run : CELL_RUNS[cell]) {
+			if (++mine[run] == 5)
+				five = true;
+			else if (mine[run] == 1 && theirs[run] > 0)
+				deadRuns++;
+		}
+		turn = other;
+		count++;
+		if (five) {
+			winner = colour;
+			return (colour == Color.white) ? "White wins" : "Black wins";
+		}
+		if (count == 64 || deadRuns == RUNS) {
+			winner = Color.blue;
+			return "Game drawn";
+		}
+		return (turn == Color.white) ? "White to play" : "Black to play";
+	}
+
+	/**
+	 * Ends the game with a result decided before the board shows it
+	 *
+	 * @param result the winner, or Color.blue for a draw
+	 */
+	String adjudicate(Color result) {
+		winner = result;
+		if (result == Color.white)
+			return "White wins by adjudication";
+		if (result == Color.black)
+			return "Black wins by adjudication";
+		return "Game drawn by adjudication";
+	}
+
+	Color getWinner() {
+		return winner;
+	}
+
+	Color getTurn() {
+		return turn;
+	}
+
+	int getMoveCount() {
+		return count;
+	}
+
+	/**
+	 * A new copy of the board on every call, which players are free to modify
+	 * and may keep searching on after the game has moved on
+	 */
+	Color[][] getPublicBoard() {
+		Color[][] copy = new Color[GomokuBoard.ROWS][];
+		for (int row = 0; row < GomokuBoard.ROWS; row++) {
+			copy[row] = board[row].clone();
+		}
+		return copy;
+	}
+
+	/**
+	 * The live board itself, only for players that promise not to write to it
+	 */
+	Color[][] getBoardView() {
+		return board;
+	}
+
+} // end FastBoard class
@@ -0,0 +1,118 @@
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One game in the binary record format. A record file starts with the
+ * 8 byte header "GOMOKU" + version + 0, followed by records of the form
+ * 
+ *   u16 length of the rest of the record
+ *   u8  flags, HAS_TIMES and/or HAS_SCORES
+ *   u8  result, the winner's LineCache code (0 for a draw) plus reason << 2
+ *   u8  number of moves
+ *   u8  length + UTF-8 name of the white player, then the same for black
+ *   u8  cell (row * 8 + col) of every move in order
+ *   i32 CPU time in microseconds of every move, if HAS_TIMES
+ *   i32 search score of every move from white's point of view, if HAS_SCORES,
+ *       NO_SCORE where the move has no label
+ * 
+ * all big endian. The object is reusable: call reset at the start of every
+ * game and add moves as they are played.
+ **/
+class GameRecord {
+
+	static final byte[] HEADER = { 'G', 'O', 'M', 'O', 'K', 'U', 1, 0 };
+
+	static final int HAS_TIMES = 1;
+	static final int HAS_SCORES = 2;
+
+	// score of a move that was not searched, or whose position is a duplicate
+	static final int NO_SCORE = Integer.MIN_VALUE;
+
+	// why the game ended, stored above the winner code
+	static final int FIVE = 0;
+	static final int DRAW = 1;
+	static final int ILLEGAL = 2;
+	static final int TIMEOUT = 3;
+	static final int ADJUDICATED = 4;
+	// names of the reasons, by value
+	static final String[] REASONS = { "five", "draw", "illegal", "timeout", "adjudicated" };
+
+	String whiteName = "";
+	String blackName = "";
+	int flags;
+	int winner;
+	int reason;
+	int count;
+	final byte[] cells = new byte[64];
+	final int[] times = new int[64];
+	final int[] scores = new int[64];
+
+	void reset(String white, String black, int flags) {
+		this.whiteName = white;
+		this.blackName = black;
+		this.flags = flags;
+		winner = 0;
+		reason = FIVE;
+		count = 0;
+	}
+
+	/**
+	 * @param micros CPU time the move took, ignored without HAS_TIMES
+	 * @param score  search score of the move, ignored without HAS_SCORES
+	 */
+	void addMove(int row, int col, int micros, int score) {
+		cells[count] = (byte) (row * 8 + col);
+		times[count] = micros;
+		scores[count] = score;
+		count++;
+	}
+
+	void setResult(Color colour, int reason) {
+		this.winner = (colour == Color.white) ? LineCache.WHITE : (colour == Color.black) ? LineCache.BLACK : 0;
+		this.reason = reason;
+	}
+
+	private static byte[] name(String name) {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > 255) {
+			byte[] truncated = new byte[255];
+			System.arraycopy(bytes, 0, truncated, 0, 255);
+			return truncated;
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return number of bytes encode will write
+	 */
+	int size() {
+		int size = 2 + 3 + 2 + name(whiteName).length + name(blackName).length + count;
+		if ((flags & HAS_TIMES) != 0)
+			size += 4 * count;
+		if ((flags & HAS_SCORES) != 0)
+			size += 4 * count;
+		return size;
+	}
+
+	void encode(ByteBuffer out) {
+		byte[] white = name(whiteName);
+		byte[] black = name(blackName);
+		out.putShort((short) (size() - 2));
+		out.put((byte) flags);
+		out.put((byte) (winner | (reason << 2)));
+		out.put((byte) count);
+		out.put((byte) white.length).put(white);
+		out.put((byte) black.length).put(black);
+		out.put(cells, 0, count);
+		if ((flags & HAS_TIMES) != 0) {
+			for (int i = 0; i < count; i++)
+				out.putInt(times[i]);
+		}
+		if ((flags & HAS_SCORES) != 0) {
+			for (int i = 0; i < count; i++)
+				out.putInt(scores[i]);
+		}
+	}
+
+} // end GameRecord class
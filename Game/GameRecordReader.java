@@ -0,0 +1,201 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Memory mapped, read only view of a record file. Games are addressed by
+ * their byte offset in the file and every field is read straight from the
+ * mapping, so scanning a corpus allocates nothing per game:
+ * 
+ *   for (long game = reader.first(); game < reader.end(); game = reader.next(game))
+ * 
+ * Files over 1GB are mapped as several overlapping segments, the overlap is
+ * the largest possible record so every record lies inside one segment.
+ **/
+class GameRecordReader {
+
+	private static final int SEGMENT_BITS = 30;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+	private static final int MAX_RECORD = 2 + 0xFFFF;
+
+	private final MappedByteBuffer[] segments;
+	private final long size;
+	private long[] index;
+
+	GameRecordReader(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			size = channel.size();
+			segments = new MappedByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS)];
+			for (int i = 0; i < segments.length; i++) {
+				long start = (long) i << SEGMENT_BITS;
+				long length = Math.min(size - start, (1L << SEGMENT_BITS) + MAX_RECORD);
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+			}
+		}
+		for (int i = 0; i < GameRecord.HEADER.length; i++) {
+			if (size < GameRecord.HEADER.length || u8(i) != (GameRecord.HEADER[i] & 0xff))
+				throw new IOException(path + " is not a game record file");
+		}
+	}
+
+	private int u8(long offset) {
+		return segments[(int) (offset >>> SEGMENT_BITS)].get((int) (offset & SEGMENT_MASK)) & 0xff;
+	}
+
+	private int u16(long offset) {
+		return segments[(int) (offset >>> SEGMENT_BITS)].getShort((int) (offset & SEGMENT_MASK)) & 0xffff;
+	}
+
+	private int i32(long game, long offset) {
+		// read relative to the record's own segment in case it straddles a boundary
+		MappedByteBuffer segment = segments[(int) (game >>> SEGMENT_BITS)];
+		return segment.getInt((int) ((game & SEGMENT_MASK) + (offset - game)));
+	}
+
+	private int u8(long game, long offset) {
+		MappedByteBuffer segment = segments[(int) (game >>> SEGMENT_BITS)];
+		return segment.get((int) ((game & SEGMENT_MASK) + (offset - game))) & 0xff;
+	}
+
+	long first() {
+		return GameRecord.HEADER.length;
+	}
+
+	long end() {
+		return size;
+	}
+
+	long next(long game) {
+		return game + 2 + u16(game);
+	}
+
+	/**
+	 * Offsets of every game, built on first use by walking the length prefixes
+	 */
+	long[] index() {
+		if (index == null) {
+			long[] offsets = new long[1024];
+			int games = 0;
+			for (long game = first(); game < end(); game = next(game)) {
+				if (games == offsets.length)
+					offsets = Arrays.copyOf(offsets, games * 2);
+				offsets[games++] = game;
+			}
+			index = Arrays.copyOf(offsets, games);
+		}
+		return index;
+	}
+
+	int flags(long game) {
+		return u8(game, game + 2);
+	}
+
+	/**
+	 * @return LineCache code of the winner, 0 for a draw
+	 */
+	int winner(long game) {
+		return u8(game, game + 3) & 3;
+	}
+
+	int reason(long game) {
+		return u8(game, game + 3) >>> 2;
+	}
+
+	int moveCount(long game) {
+		return u8(game, game + 4);
+	}
+
+	private long whiteNameAt(long game) {
+		return game + 5;
+	}
+
+	private long blackNameAt(long game) {
+		long white = whiteNameAt(game);
+		return white + 1 + u8(game, white);
+	}
+
+	private long movesAt(long game) {
+		long black = blackNameAt(game);
+		return black + 1 + u8(game, black);
+	}
+
+	private String name(long game, long at) {
+		byte[] bytes = new byte[u8(game, at)];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) u8(game, at + 1 + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	String whiteName(long game) {
+		return name(game, whiteNameAt(game));
+	}
+
+	String blackName(long game) {
+		return name(game, blackNameAt(game));
+	}
+
+	/**
+	 * @return cell index, row * 8 + col, of the given move
+	 */
+	int move(long game, int ply) {
+		return u8(game, movesAt(game) + ply);
+	}
+
+	/**
+	 * @return CPU time of the move in microseconds, or -1 if not recorded
+	 */
+	int time(long game, int ply) {
+		if ((flags(game) & GameRecord.HAS_TIMES) == 0)
+			return -1;
+		return i32(game, movesAt(game) + moveCount(game) + 4L * ply);
+	}
+
+	/**
+	 * @return search score of the move, or GameRecord.NO_SCORE if not
+	 *         recorded, as for every move of a game without HAS_SCORES
+	 */
+	int score(long game, int ply) {
+		if ((flags(game) & GameRecord.HAS_SCORES) == 0)
+			return GameRecord.NO_SCORE;
+		long scores = movesAt(game) + moveCount(game);
+		if ((flags(game) & GameRecord.HAS_TIMES) != 0)
+			scores += 4L * moveCount(game);
+		return i32(game, scores + 4L * ply);
+	}
+
+	/**
+	 * Scans a record file and prints a summary of the games in it
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: java GameRecordReader file");
+			return;
+		}
+		long start = System.nanoTime();
+		GameRecordReader reader = new GameRecordReader(Paths.get(args[0]));
+		long games = 0, moves = 0, micros = 0;
+		long[] results = new long[3];
+		for (long game = reader.first(); game < reader.end(); game = reader.next(game)) {
+			int count = reader.moveCount(game);
+			games++;
+			moves += count;
+			results[reader.winner(game)]++;
+			if ((reader.flags(game) & GameRecord.HAS_TIMES) != 0) {
+				for (int ply = 0; ply < count; ply++)
+					micros += reader.time(game, ply);
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d games, White %d, Black %d, drawn %d, %.1f moves per game, %.2fms per move%n", games,
+				results[LineCache.WHITE], results[LineCache.BLACK], results[0], moves / Math.max(1.0, games),
+				micros / 1000.0 / Math.max(1, moves));
+		System.out.printf("scanned %d bytes in %.3fs%n", reader.end(), seconds);
+	}
+
+} // end GameRecordReader class
@@ -0,0 +1,52 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends GameRecords to a record file through a buffered FileChannel. An
+ * existing file is appended to, a new one gets the header written first.
+ * Safe to share between threads, appends are serialised.
+ **/
+class GameRecordWriter implements Closeable {
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+	private long games;
+
+	GameRecordWriter(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+		if (channel.size() == 0) {
+			buffer.put(GameRecord.HEADER);
+		}
+	}
+
+	synchronized void append(GameRecord record) throws IOException {
+		if (buffer.remaining() < record.size()) {
+			flush();
+		}
+		record.encode(buffer);
+		games++;
+	}
+
+	synchronized void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	synchronized long getGameCount() {
+		return games;
+	}
+
+	public synchronized void close() throws IOException {
+		flush();
+		channel.close();
+	}
+
+} // end GameRecordWriter class
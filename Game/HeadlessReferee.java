@@ -0,0 +1,294 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Runs batches of games between two players without the AWT referee, on a
+ * FastBoard. Uses the same CPU time limit and move rules as GomokuReferee.
+ * 
+ * Usage: java HeadlessReferee WhitePlayer BlackPlayer [games n] [limit secs] [deadline secs] [fallback] [opening k] [adjudicate] [fives] [log] [view] [record file]
+ * 
+ * Every move is asked for on a worker thread as a MoveRequest. The referee
+ * waits for it until the wall clock deadline (the CPU time limit unless
+ * given) and then interrupts the player and goes on, so a slow player can
+ * no longer hold up a batch. An AnytimePlayer cut off at the deadline plays
+ * the best move it has published. Any other move over the CPU limit or past
+ * the deadline loses on time, or with fallback is replaced by a random
+ * legal move. A player still busy with a move it was cut off from is not
+ * asked again until it returns or the next deadline passes.
+ * 
+ * With opening, every game starts from k random stones in the centre of the
+ * board, seeded by the game number.
+ * 
+ * With adjudicate, an Adjudicator looks at the board after every move and
+ * ends the game as soon as its result is decided. Adding fives also credits
+ * a five the side to move could make without waiting for it to be played.
+ * 
+ * With view, players implementing TrustedPlayer are passed the live board
+ * instead of a fresh copy every turn. With record, every game is appended
+ * to the given file in the GameRecord format.
+ **/
+class HeadlessReferee {
+
+	double timeLimit = 10.0;
+	// wall clock seconds per move, 0 for the same as timeLimit
+	double deadline;
+	boolean fallback;
+	// random stones played before the players move, from openingSeed
+	int opening;
+	long openingSeed;
+	// status of the last move of the last game
+	String lastStatus = "";
+	// ends decided games early when set
+	Adjudicator adjudicator;
+	int adjudicated;
+	boolean log;
+	boolean view;
+	final FastBoard board = new FastBoard();
+	final GameRecord record = new GameRecord();
+	GameRecordWriter recorder;
+	// JVM uptime in ms when the first move of the run was made, 0 before it
+	long firstMove;
+	// per colour, white then black, over the whole run
+	final long[] cpuTime = new long[2];
+	final long[] wallTime = new long[2];
+	final int[] overruns = new int[2];
+	final int[] cutoffs = new int[2];
+	// requests that were cut off and have not returned yet, by player
+	private final Map<GomokuPlayer, MoveRequest> running = new IdentityHashMap<GomokuPlayer, MoveRequest>();
+	private final Random random = new Random(1);
+
+	static String colorToString(Color c) {
+		if (c == null)
+			return "NULL";
+		if (c == Color.white)
+			return "White";
+		if (c == Color.black)
+			return "Black";
+		return "None";
+	}
+
+	/**
+	 * Plays one game to completion
+	 * 
+	 * @return the winner, or Color.blue for a draw
+	 */
+	Color playGame(GomokuPlayer whitePlayer, GomokuPlayer blackPlayer) throws IOException {
+		RefereeEvents.Game gameEvent = new RefereeEvents.Game();
+		gameEvent.begin();
+		board.init();
+		record.reset(whitePlayer.getClass().getName(), blackPlayer.getClass().getName(), GameRecord.HAS_TIMES);
+		playOpening();
+		String status = "";
+		while (board.getWinner() == null) {
+			Color turn = board.getTurn();
+			GomokuPlayer player = (turn == Color.white) ? whitePlayer : blackPlayer;
+			Color[][] position = (view && player instanceof TrustedPlayer) ? board.getBoardView()
+					: board.getPublicBoard();
+			RefereeEvents.MakeMove moveEvent = new RefereeEvents.MakeMove();
+			moveEvent.begin();
+			MoveRequest request = ask(player, position, turn);
+			Move move = request.move;
+			int side = (turn == Color.white) ? 0 : 1;
+			cpuTime[side] += request.cpuNanos;
+			wallTime[side] += request.wallNanos;
+			boolean cutoff = request.timedOut && request.published != null
+					&& board.getBoardView()[request.published.row][request.published.col] == null;
+			if (cutoff) {
+				cutoffs[side]++;
+				move = request.published;
+			}
+			boolean overrun = !cutoff && (request.timedOut || request.cpuNanos / 1e9 > timeLimit);
+			if (overrun) {
+				overruns[side]++;
+				move = fallback ? fallbackMove(turn) : null;
+			}
+			if (overrun && !fallback) {
+				board.makeMove(null, turn);
+				status = "Time limit exceeded";
+			} else {
+				status = board.makeMove(move, turn);
+			}
+			if (board.getMoveCount() > record.count) {
+				record.addMove(move.row, move.col, (int) (request.cpuNanos / 1000), 0);
+			}
+			if (adjudicator != null && board.getWinner() == null) {
+				Color result = adjudicator.decide(board);
+				if (result != null) {
+					status = board.adjudicate(result);
+					adjudicated++;
+				}
+			}
+			if (moveEvent.shouldCommit()) {
+				moveEvent.colour = colorToString(turn);
+				moveEvent.move = String.valueOf(move);
+				moveEvent.cpuTime = request.cpuNanos;
+				moveEvent.cutoff = cutoff;
+				moveEvent.overrun = overrun;
+				moveEvent.status = status;
+				moveEvent.commit();
+			}
+			if (firstMove == 0)
+				firstMove = ManagementFactory.getRuntimeMXBean().getUptime();
+			if (log) {
+				System.out.printf("%s: %s  cpu %.1f ms, wall %.1f ms%s%n", colorToString(turn), move,
+						request.cpuNanos / 1e6, request.wallNanos / 1e6, overrun ? ", over time" : cutoff ? ", cut off" : "");
+				if (board.getWinner() != null)
+					System.out.println(status + "\n" + colorToString(board.getWinner()) + " WINS");
+			}
+		}
+		if (gameEvent.shouldCommit()) {
+			gameEvent.white = whitePlayer.getClass().getName();
+			gameEvent.black = blackPlayer.getClass().getName();
+			gameEvent.winner = colorToString(board.getWinner());
+			gameEvent.status = status;
+			gameEvent.moves = board.getMoveCount();
+			gameEvent.commit();
+		}
+		lastStatus = status;
+		if (recorder != null) {
+			record.setResult(board.getWinner(), reason(status));
+			recorder.append(record);
+		}
+		return board.getWinner();
+	}
+
+	void playOpening() {
+		Random stones = new Random(openingSeed);
+		for (int i = 0; i < opening; i++) {
+			int row, col;
+			do {
+				row = 2 + stones.nextInt(4);
+				col = 2 + stones.nextInt(4);
+			} while (board.getBoardView()[row][col] != null);
+			board.makeMove(new Move(row, col), board.getTurn());
+			record.addMove(row, col, 0, 0);
+		}
+	}
+
+	/**
+	 * Asks the player for a move and waits no longer than the deadline
+	 */
+	MoveRequest ask(GomokuPlayer player, Color[][] position, Color turn) {
+		double seconds = (deadline > 0) ? deadline : timeLimit;
+		long asked = System.nanoTime();
+		long due = asked + (long) (seconds * 1e9);
+		MoveRequest request = new MoveRequest(player, turn);
+		MoveRequest previous = running.remove(player);
+		if (previous != null && !previous.awaitFinished(due)) {
+			running.put(player, previous);
+			request.timedOut = true;
+		} else {
+			request.start(position).await(due);
+			if (request.timedOut)
+				running.put(player, request);
+		}
+		// the time spent waiting for the previous request counts against this move
+		request.wallNanos = System.nanoTime() - asked;
+		return request;
+	}
+
+	/**
+	 * @return a random empty cell, played in place of a move that was over time
+	 */
+	Move fallbackMove(Color turn) {
+		Color[][] cells = board.getBoardView();
+		List<Move> moves = new ArrayList<Move>();
+		for (int row = 0; row < GomokuBoard.ROWS; row++) {
+			for (int col = 0; col < GomokuBoard.COLS; col++) {
+				if (cells[row][col] == null)
+					moves.add(new Move(row, col));
+			}
+		}
+		return moves.isEmpty() ? null : moves.get(random.nextInt(moves.size()));
+	}
+
+	static int reason(String status) {
+		if (status.endsWith("wins"))
+			return GameRecord.FIVE;
+		if (status.equals("Game drawn"))
+			return GameRecord.DRAW;
+		if (status.equals("Time limit exceeded"))
+			return GameRecord.TIMEOUT;
+		if (status.endsWith("by adjudication"))
+			return GameRecord.ADJUDICATED;
+		return GameRecord.ILLEGAL;
+	}
+
+	static GomokuPlayer load(String name) throws ReflectiveOperationException {
+		return (GomokuPlayer) Class.forName(name).getDeclaredConstructor().newInstance();
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.out.println(
+					"Usage: java HeadlessReferee WhitePlayer BlackPlayer [games n] [limit secs] [deadline secs] [fallback] [opening k] [adjudicate] [fives] [log] [view] [record file]");
+			return;
+		}
+		// Color is the only AWT class the players need, keep the toolkit headless
+		System.setProperty("java.awt.headless", "true");
+		HeadlessReferee referee = new HeadlessReferee();
+		int games = 1;
+		boolean fives = false;
+		for (int i = 2; i < args.length; i++) {
+			if (args[i].equals("games"))
+				games = Integer.parseInt(args[++i]);
+			else if (args[i].equals("limit"))
+				referee.timeLimit = Double.parseDouble(args[++i]);
+			else if (args[i].equals("deadline"))
+				referee.deadline = Double.parseDouble(args[++i]);
+			else if (args[i].equals("fallback"))
+				referee.fallback = true;
+			else if (args[i].equals("opening"))
+				referee.opening = Integer.parseInt(args[++i]);
+			else if (args[i].equals("adjudicate"))
+				referee.adjudicator = new Adjudicator();
+			else if (args[i].equals("fives"))
+				fives = true;
+			else if (args[i].equals("log"))
+				referee.log = true;
+			else if (args[i].equals("view"))
+				referee.view = true;
+			else if (args[i].equals("record"))
+				referee.recorder = new GameRecordWriter(Paths.get(args[++i]));
+		}
+		if (referee.adjudicator != null)
+			referee.adjudicator.creditFives = fives;
+		GomokuPlayer whitePlayer = load(args[0]);
+		GomokuPlayer blackPlayer = load(args[1]);
+		System.out.println("White: " + args[0] + " vs Black: " + args[1]);
+		int whiteWins = 0, blackWins = 0, draws = 0;
+		long start = System.nanoTime();
+		for (int game = 0; game < games; game++) {
+			referee.openingSeed = game;
+			Color winner = referee.playGame(whitePlayer, blackPlayer);
+			if (winner == Color.white)
+				whiteWins++;
+			else if (winner == Color.black)
+				blackWins++;
+			else
+				draws++;
+			System.out.println(colorToString(winner) + " WINS");
+		}
+		if (referee.recorder != null)
+			referee.recorder.close();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("White %d, Black %d, drawn %d in %.2fs (%.1f games/s)%n", whiteWins, blackWins, draws,
+				seconds, games / seconds);
+		for (int side = 0; side < 2; side++) {
+			System.out.printf("%s: cpu %.2fs, wall %.2fs, %d moves cut off, %d over time%n",
+					side == 0 ? "White" : "Black", referee.cpuTime[side] / 1e9, referee.wallTime[side] / 1e9,
+					referee.cutoffs[side], referee.overruns[side]);
+		}
+		if (referee.adjudicator != null)
+			System.out.println(referee.adjudicated + " games adjudicated, " + referee.adjudicator.nodes + " solver nodes");
+		System.out.println("first move after " + referee.firstMove + " ms");
+	}
+
+} // end HeadlessReferee class
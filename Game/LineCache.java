@@ -0,0 +1,284 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Keeps every row, column and diagonal of length five or more packed into an
+ * int, two bits per cell, so that a move only has to touch the four lines
+ * passing through the played cell. The pattern score of each packed line is
+ * looked up in a precomputed table and a running total is kept, which makes
+ * the leaf evaluation a field read instead of rebuilding the line strings.
+ **/
+class LineCache {
+
+	// two bit cell codes, EDGE pads lines shorter than the board
+	static final int EMPTY = 0;
+	static final int BLACK = 1;
+	static final int WHITE = 2;
+	static final int EDGE = 3;
+
+	// 8 rows, 8 cols, 7 diagonals in each direction
+	static final int LINES = 30;
+	static final int DIRECTIONS = 4;
+
+	// weights for windows that are 0, 1, 2 and 3 stones away from five,
+	// replaced by the contents of the weights file when there is one
+	static final int[] DEFAULT_WEIGHTS = { 100000, 100, 5, 1 };
+	static final String WEIGHTS_FILE = System.getProperty("weights", "weights.txt");
+	static final int[] WEIGHTS = loadWeights(WEIGHTS_FILE);
+
+	// for each direction, the line through a cell (-1 if too short) and the cell's position on it
+	static final int[][] CELL_LINE = new int[DIRECTIONS][64];
+	static final int[][] CELL_POS = new int[DIRECTIONS][64];
+	// the value of every line on an empty board
+	static final int[] EMPTY_LINES = new int[LINES];
+
+	// score of a packed line from white's point of view
+	static final int[] LINE_SCORE = new int[1 << 16];
+	// number of fives in a packed line, white in the low byte and black in the next
+	static final int[] LINE_FIVES = new int[1 << 16];
+
+	static {
+		for (int d = 0; d < DIRECTIONS; d++) {
+			for (int cell = 0; cell < 64; cell++) {
+				CELL_LINE[d][cell] = -1;
+			}
+		}
+		int[] length = new int[LINES];
+		for (int row = 0; row < GomokuBoard.ROWS; row++) {
+			for (int col = 0; col < GomokuBoard.COLS; col++) {
+				int cell = row * 8 + col;
+				// rows
+				place(0, cell, row, col, length);
+				// cols
+				place(1, cell, 8 + col, row, length);
+				// increasing diagonals, row + col between 4 and 10
+				int sum = row + col;
+				if (sum >= 4 && sum <= 10) {
+					place(2, cell, 16 + sum - 4, row - Math.max(0, sum - 7), length);
+				}
+				// decreasing diagonals, col - row between -3 and 3
+				int diff = col - row;
+				if (diff >= -3 && diff <= 3) {
+					place(3, cell, 23 + diff + 3, row - Math.max(0, -diff), length);
+				}
+			}
+		}
+		for (int line = 0; line < LINES; line++) {
+			for (int pos = length[line]; pos < 8; pos++) {
+				EMPTY_LINES[line] |= EDGE << (pos * 2);
+			}
+		}
+		// the line scores in a tables file are only usable with the same weights
+		if (!Arrays.equals(TableFile.weights(), WEIGHTS) || !TableFile.read(TableFile.LINE_SCORE, LINE_SCORE)
+				|| !TableFile.read(TableFile.LINE_FIVES, LINE_FIVES)) {
+			buildTables();
+		}
+	}
+
+	private static void place(int dir, int cell, int line, int pos, int[] length) {
+		CELL_LINE[dir][cell] = line;
+		CELL_POS[dir][cell] = pos;
+		length[line]++;
+	}
+
+	/**
+	 * Reads the four weights written by Tuner, falling back to the defaults if
+	 * the file is missing or unreadable
+	 */
+	static int[] loadWeights(String file) {
+		int[] weights = DEFAULT_WEIGHTS.clone();
+		Path path = Paths.get(file);
+		if (!Files.exists(path))
+			return weights;
+		try {
+			int i = 0;
+			for (String line : Files.readAllLines(path)) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				for (String value : line.split("\\s+")) {
+					if (i < weights.length)
+						weights[i++] = Integer.parseInt(value);
+				}
+			}
+		} catch (IOException | NumberFormatException e) {
+			System.err.println("Ignoring weights file " + file + ": " + e);
+			return DEFAULT_WEIGHTS.clone();
+		}
+		return weights;
+	}
+
+	/**
+	 * Counts the windows of a packed line that hold only one colour, by how
+	 * many stones they are away from five, with the sliding window used by
+	 * nearWins. One byte per count: white's for 0 to 3 away in the low four
+	 * bytes and black's in the high four
+	 */
+	static long windowCounts(int packed) {
+		long counts = 0;
+		for (int start = 0; start < 4; start++) {
+			int white = 0, black = 0, edge = 0;
+			for (int pos = start; pos < start + 5; pos++) {
+				int code = (packed >>> (pos * 2)) & 3;
+				if (code == WHITE)
+					white++;
+				else if (code == BLACK)
+					black++;
+				else if (code == EDGE)
+					edge++;
+			}
+			if (edge > 0)
+				continue;
+			if (black == 0 && white >= 2)
+				counts += 1L << (8 * (5 - white));
+			else if (white == 0 && black >= 2)
+				counts += 1L << (8 * (4 + 5 - black));
+		}
+		return counts;
+	}
+
+	/**
+	 * Scores every possible packed line, a window counts when it holds no
+	 * opposing stones or edges
+	 */
+	static void buildTables() {
+		for (int packed = 0; packed < (1 << 16); packed++) {
+			long counts = windowCounts(packed);
+			int score = 0;
+			for (int away = 0; away < 4; away++) {
+				score += WEIGHTS[away] * (count(counts, away, WHITE) - count(counts, away, BLACK));
+			}
+			LINE_SCORE[packed] = score;
+			LINE_FIVES[packed] = count(counts, 0, WHITE) | (count(counts, 0, BLACK) << 8);
+		}
+	}
+
+	static int count(long counts, int away, int code) {
+		return (int) (counts >>> (8 * (away + (code == BLACK ? 4 : 0)))) & 0xff;
+	}
+
+	final int[] lines = new int[LINES];
+	long white;
+	long black;
+	long hash;
+	int score;
+	int fives;
+	int stones;
+
+	LineCache() {
+		System.arraycopy(EMPTY_LINES, 0, lines, 0, LINES);
+		for (int line = 0; line < LINES; line++) {
+			score += LINE_SCORE[lines[line]];
+		}
+	}
+
+	LineCache(Color[][] board) {
+		this();
+		for (int row = 0; row < GomokuBoard.ROWS; row++) {
+			for (int col = 0; col < GomokuBoard.COLS; col++) {
+				if (board[row][col] != null) {
+					makeMove(row, col, board[row][col]);
+				}
+			}
+		}
+	}
+
+	static int code(Color colour) {
+		return colour == Color.WHITE ? WHITE : BLACK;
+	}
+
+	void makeMove(int row, int col, Color colour) {
+		makeMove(row * 8 + col, code(colour));
+	}
+
+	void unmakeMove(int row, int col) {
+		unmakeMove(row * 8 + col);
+	}
+
+	/**
+	 * Places a stone and refreshes the four lines through the cell
+	 */
+	void makeMove(int cell, int code) {
+		if (code == WHITE)
+			white |= 1L << cell;
+		else
+			black |= 1L << cell;
+		hash ^= Zobrist.KEYS[code][cell];
+		stones++;
+		for (int d = 0; d < DIRECTIONS; d++) {
+			int line = CELL_LINE[d][cell];
+			if (line >= 0) {
+				update(line, lines[line] | (code << (CELL_POS[d][cell] * 2)));
+			}
+		}
+	}
+
+	/**
+	 * Removes the stone on the cell and refreshes the four lines through it
+	 */
+	void unmakeMove(int cell) {
+		hash ^= Zobrist.KEYS[(white & (1L << cell)) != 0 ? WHITE : BLACK][cell];
+		white &= ~(1L << cell);
+		black &= ~(1L << cell);
+		stones--;
+		for (int d = 0; d < DIRECTIONS; d++) {
+			int line = CELL_LINE[d][cell];
+			if (line >= 0) {
+				update(line, lines[line] & ~(3 << (CELL_POS[d][cell] * 2)));
+			}
+		}
+	}
+
+	private void update(int line, int packed) {
+		int old = lines[line];
+		score += LINE_SCORE[packed] - LINE_SCORE[old];
+		fives += LINE_FIVES[packed] - LINE_FIVES[old];
+		lines[line] = packed;
+	}
+
+	/**
+	 * Scores the children reached by placing a stone on each of the cells,
+	 * from white's point of view, by adding the change in the four lines
+	 * through each cell to the current total. Nothing is modified
+	 */
+	void evaluateChildren(int[] cells, int count, int code, int[] scores) {
+		for (int i = 0; i < count; i++)
+			scores[i] = evaluateChild(cells[i], code);
+	}
+
+	/**
+	 * @return score of the child reached by placing a stone on the cell, from
+	 *         white's point of view
+	 */
+	int evaluateChild(int cell, int code) {
+		int child = score;
+		for (int d = 0; d < DIRECTIONS; d++) {
+			int line = CELL_LINE[d][cell];
+			if (line >= 0) {
+				int old = lines[line];
+				child += LINE_SCORE[old | (code << (CELL_POS[d][cell] * 2))] - LINE_SCORE[old];
+			}
+		}
+		return child;
+	}
+
+	/**
+	 * Same weighting as Player.evaluate, summed over the cached line scores
+	 */
+	int evaluate(Color me) {
+		return me == Color.WHITE ? score : -score;
+	}
+
+	boolean hasFive(Color colour) {
+		return (colour == Color.WHITE ? fives & 0xff : fives >>> 8) != 0;
+	}
+
+	boolean isEmpty(int cell) {
+		return ((white | black) & (1L << cell)) == 0;
+	}
+
+} // end LineCache class
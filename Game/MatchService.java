@@ -0,0 +1,458 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Small HTTP service handing out Player's moves to local tools, bound to the
+ * loopback address only. Searches run on a bounded worker pool: when all
+ * workers are busy and the queue is full a request is refused with 503
+ * rather than waiting. Every search deepens one ply at a time, as an
+ * anytime Player, until its time budget runs out: a timer then stops the
+ * search within a few nodes and the move of the deepest completed depth is
+ * answered, so no request holds a worker, or the player of its game, much
+ * past its budget.
+ *
+ *   GET/POST /move?board=...&budget=ms[&game=id]
+ *       board is 64 characters row by row, '.' empty, 'w' white, 'b' black,
+ *       or white=cell,cell&black=cell,cell with cell = row * 8 + col. The
+ *       side to move is white when both have played the same number of
+ *       stones. Requests with the same game id share one Player, so its
+ *       transposition table carries over from move to move, and are
+ *       searched one at a time.
+ *   POST /analyse?budget=ms
+ *       one board string per line, searched in parallel as one batch and
+ *       answered as a JSON array in the same order
+ *   GET/POST /pv?board=...&k=3&depth=d&budget=ms
+ *       multi-PV analysis of the k best moves, k at most MAX_PV, streamed
+ *       as one JSON line per completed depth up to d (at most the service's
+ *       depth) until the budget runs out
+ *   GET /metrics
+ *       request counts and latency percentiles of the searches
+ *
+ * Usage: java MatchService [port p] [workers n] [queue q] [depth d]
+ **/
+class MatchService {
+
+	// most lines a /pv request is answered with
+	static final int MAX_PV = 8;
+
+	int port = 8080;
+	int workers = Runtime.getRuntime().availableProcessors();
+	int queueSize = 64;
+	int maxDepth = 8;
+	// most games kept at once, the least recently used is dropped beyond it
+	int maxGames = 256;
+
+	HttpServer server;
+	ThreadPoolExecutor pool;
+	// stops searches at their deadlines
+	final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Search deadline");
+		thread.setDaemon(true);
+		return thread;
+	});
+	final Latencies latencies = new Latencies(4096);
+	final AtomicLong rejected = new AtomicLong();
+	final AtomicLong failed = new AtomicLong();
+
+	// a player per game id, in least recently used order
+	private final Map<String, Player> games = new LinkedHashMap<String, Player>(16, 0.75f, true) {
+		protected boolean removeEldestEntry(Map.Entry<String, Player> eldest) {
+			return size() > maxGames;
+		}
+	};
+	// scratch players for requests without a game
+	private final ThreadLocal<Player> scratch = ThreadLocal.withInitial(() -> newPlayer(1 << 18));
+
+	/**
+	 * The outcome of one search
+	 */
+	static class Result {
+		int row;
+		int col;
+		int score;
+		int depth;
+		long nodes;
+		long micros;
+
+		String toJson() {
+			return "{\"row\":" + row + ",\"col\":" + col + ",\"score\":" + score + ",\"depth\":" + depth
+					+ ",\"nodes\":" + nodes + ",\"millis\":" + (micros / 1000.0) + "}";
+		}
+	}
+
+	/**
+	 * The most recent latencies in a ring, sorted on demand for percentiles
+	 */
+	static class Latencies {
+		private final long[] ring;
+		private long count;
+
+		Latencies(int size) {
+			ring = new long[size];
+		}
+
+		synchronized void add(long micros) {
+			ring[(int) (count++ % ring.length)] = micros;
+		}
+
+		synchronized long count() {
+			return count;
+		}
+
+		/**
+		 * @return the latencies in microseconds at each percentile, 0 when there are none
+		 */
+		long[] percentiles(double... percents) {
+			long[] sorted;
+			synchronized (this) {
+				sorted = Arrays.copyOf(ring, (int) Math.min(count, ring.length));
+			}
+			Arrays.sort(sorted);
+			long[] values = new long[percents.length];
+			for (int i = 0; i < percents.length && sorted.length > 0; i++) {
+				int index = (int) Math.ceil(percents[i] / 100 * sorted.length) - 1;
+				values[i] = sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+			}
+			return values;
+		}
+	}
+
+	/**
+	 * @param slots size of the player's transposition table
+	 */
+	Player newPlayer(int slots) {
+		Player player = new Player();
+		player.verbose = false;
+		player.anytime = true;
+		player.depth = maxDepth;
+		player.table = new TranspositionTable(slots);
+		return player;
+	}
+
+	void start() throws IOException {
+		pool = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize));
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		// the handlers only parse and wait, the searching happens on the pool
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/move", this::move);
+		server.createContext("/analyse", this::analyse);
+		server.createContext("/pv", this::pv);
+		server.createContext("/metrics", this::metrics);
+		server.start();
+		port = server.getAddress().getPort();
+	}
+
+	void stop() {
+		server.stop(0);
+		pool.shutdownNow();
+		timer.shutdownNow();
+	}
+
+	/**
+	 * Iterative deepening up to maxDepth, stopped when the budget runs out
+	 */
+	Result search(Player player, Color[][] board, long budgetMillis) {
+		long start = System.nanoTime();
+		Color me = sideToMove(board);
+		ScheduledFuture<?> deadline = stopAfter(player, budgetMillis);
+		Move move;
+		try {
+			move = player.chooseMove(board, me);
+		} finally {
+			release(player, deadline);
+		}
+		Result result = new Result();
+		result.row = move.row;
+		result.col = move.col;
+		result.score = player.lastScore;
+		result.depth = player.lastDepth;
+		result.nodes = player.nodes;
+		result.micros = (System.nanoTime() - start) / 1000;
+		latencies.add(result.micros);
+		return result;
+	}
+
+	/**
+	 * Schedules the player's search to be stopped once the budget runs out
+	 */
+	ScheduledFuture<?> stopAfter(Player player, long budgetMillis) {
+		return timer.schedule(() -> {
+			player.stop = true;
+		}, budgetMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Cancels a deadline after the search, waiting for one that already fired
+	 * so it cannot stop the player's next search
+	 */
+	static void release(Player player, ScheduledFuture<?> deadline) {
+		deadline.cancel(false);
+		try {
+			deadline.get();
+		} catch (CancellationException | ExecutionException e) {
+			// cancelled before it ran
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		player.stop = false;
+	}
+
+	Result searchGame(String game, Color[][] board, long budgetMillis) {
+		if (game == null)
+			return search(scratch.get(), board, budgetMillis);
+		Player player;
+		synchronized (games) {
+			player = games.computeIfAbsent(game, id -> newPlayer(1 << 16));
+		}
+		synchronized (player) {
+			return search(player, board, budgetMillis);
+		}
+	}
+
+	static Color sideToMove(Color[][] board) {
+		int white = 0, black = 0;
+		for (Color[] row : board) {
+			for (Color stone : row) {
+				if (stone == Color.white)
+					white++;
+				else if (stone == Color.black)
+					black++;
+			}
+		}
+		return (white == black) ? Color.white : Color.black;
+	}
+
+	/**
+	 * Reads either board form
+	 *
+	 * @throws IllegalArgumentException if the board is malformed, full or won
+	 */
+	static Color[][] parseBoard(Map<String, String> params) {
+		Color[][] board = new Color[GomokuBoard.ROWS][GomokuBoard.COLS];
+		String compact = params.get("board");
+		if (compact != null) {
+			compact = compact.trim();
+			if (compact.length() != 64)
+				throw new IllegalArgumentException("board needs 64 cells, got " + compact.length());
+			for (int cell = 0; cell < 64; cell++) {
+				char c = Character.toLowerCase(compact.charAt(cell));
+				if (c == 'w')
+					board[cell / 8][cell % 8] = Color.white;
+				else if (c == 'b')
+					board[cell / 8][cell % 8] = Color.black;
+				else if (c != '.' && c != '-')
+					throw new IllegalArgumentException("unknown cell '" + c + "'");
+			}
+		} else {
+			place(board, params.get("white"), Color.white);
+			place(board, params.get("black"), Color.black);
+		}
+		LineCache lines = new LineCache(board);
+		if (lines.stones == 64 || lines.hasFive(Color.white) || lines.hasFive(Color.black))
+			throw new IllegalArgumentException("game is already over");
+		return board;
+	}
+
+	private static void place(Color[][] board, String cells, Color colour) {
+		if (cells == null || cells.isEmpty())
+			return;
+		for (String value : cells.split(",")) {
+			int cell;
+			try {
+				cell = Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("bad cell " + value);
+			}
+			if (cell < 0 || cell >= 64 || board[cell / 8][cell % 8] != null)
+				throw new IllegalArgumentException("bad cell " + cell);
+			board[cell / 8][cell % 8] = colour;
+		}
+	}
+
+	/**
+	 * Query string and form body parameters together
+	 */
+	static Map<String, String> params(String query, String body) {
+		Map<String, String> params = new HashMap<String, String>();
+		for (String part : new String[] { query, body }) {
+			if (part == null || part.isEmpty())
+				continue;
+			for (String pair : part.split("&")) {
+				int eq = pair.indexOf('=');
+				if (eq > 0) {
+					params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+							URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+				}
+			}
+		}
+		return params;
+	}
+
+	static String body(HttpExchange exchange) throws IOException {
+		return new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+	}
+
+	static void send(HttpExchange exchange, int status, String text) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type",
+				text.startsWith("{") || text.startsWith("[") ? "application/json" : "text/plain");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	static long budget(Map<String, String> params) {
+		return Long.parseLong(params.getOrDefault("budget", "1000"));
+	}
+
+	void move(HttpExchange exchange) throws IOException {
+		try {
+			Map<String, String> params = params(exchange.getRequestURI().getRawQuery(), body(exchange));
+			Color[][] board = parseBoard(params);
+			long budget = budget(params);
+			String game = params.get("game");
+			Future<Result> result = pool.submit(() -> searchGame(game, board, budget));
+			send(exchange, 200, result.get().toJson());
+		} catch (IllegalArgumentException e) {
+			send(exchange, 400, e.getMessage());
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			send(exchange, 503, "busy");
+		} catch (InterruptedException | ExecutionException e) {
+			failed.incrementAndGet();
+			send(exchange, 500, String.valueOf(e));
+		}
+	}
+
+	void analyse(HttpExchange exchange) throws IOException {
+		List<Future<Result>> results = new ArrayList<Future<Result>>();
+		try {
+			Map<String, String> params = params(exchange.getRequestURI().getRawQuery(), null);
+			long budget = budget(params);
+			List<Color[][]> boards = new ArrayList<Color[][]>();
+			for (String line : body(exchange).split("\n")) {
+				if (!line.trim().isEmpty())
+					boards.add(parseBoard(Map.of("board", line)));
+			}
+			if (boards.size() > queueSize + workers)
+				throw new IllegalArgumentException("at most " + (queueSize + workers) + " boards per batch");
+			for (Color[][] board : boards)
+				results.add(pool.submit(() -> search(scratch.get(), board, budget)));
+			StringBuilder json = new StringBuilder("[");
+			for (Future<Result> result : results) {
+				json.append(json.length() > 1 ? "," : "").append(result.get().toJson());
+			}
+			send(exchange, 200, json.append("]").toString());
+		} catch (IllegalArgumentException e) {
+			send(exchange, 400, e.getMessage());
+		} catch (RejectedExecutionException e) {
+			// the batch is all or nothing
+			for (Future<Result> result : results)
+				result.cancel(true);
+			rejected.incrementAndGet();
+			send(exchange, 503, "busy");
+		} catch (InterruptedException | ExecutionException e) {
+			failed.incrementAndGet();
+			send(exchange, 500, String.valueOf(e));
+		}
+	}
+
+	void pv(HttpExchange exchange) throws IOException {
+		try {
+			Map<String, String> params = params(exchange.getRequestURI().getRawQuery(), body(exchange));
+			Color[][] board = parseBoard(params);
+			int k = Math.min(MAX_PV, Integer.parseInt(params.getOrDefault("k", "3")));
+			int depth = Math.min(maxDepth, Integer.parseInt(params.getOrDefault("depth", "4")));
+			long budget = budget(params);
+			if (k < 1 || depth < 1)
+				throw new IllegalArgumentException("k and depth must be positive");
+			Future<?> done = pool.submit(() -> {
+				long start = System.nanoTime();
+				exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+				// length 0 streams the body in chunks
+				exchange.sendResponseHeaders(200, 0);
+				Player player = scratch.get();
+				ScheduledFuture<?> deadline = stopAfter(player, budget);
+				try (OutputStream out = exchange.getResponseBody()) {
+					player.analyse(board, sideToMove(board), k, depth, analysis -> {
+						try {
+							out.write((analysis.toJson() + "\n").getBytes(StandardCharsets.UTF_8));
+							out.flush();
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					});
+				} finally {
+					release(player, deadline);
+				}
+				latencies.add((System.nanoTime() - start) / 1000);
+				return null;
+			});
+			done.get();
+		} catch (IllegalArgumentException e) {
+			send(exchange, 400, e.getMessage());
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			send(exchange, 503, "busy");
+		} catch (InterruptedException | ExecutionException e) {
+			// the headers are already sent, so the stream is just cut short
+			failed.incrementAndGet();
+			exchange.close();
+		}
+	}
+
+	void metrics(HttpExchange exchange) throws IOException {
+		long[] p = latencies.percentiles(50, 90, 99, 100);
+		send(exchange, 200,
+				"{\"searches\":" + latencies.count() + ",\"rejected\":" + rejected.get() + ",\"failed\":"
+						+ failed.get() + ",\"queued\":" + pool.getQueue().size() + ",\"active\":"
+						+ pool.getActiveCount() + ",\"p50_ms\":" + p[0] / 1000.0 + ",\"p90_ms\":" + p[1] / 1000.0
+						+ ",\"p99_ms\":" + p[2] / 1000.0 + ",\"max_ms\":" + p[3] / 1000.0 + "}");
+	}
+
+	public static void main(String[] args) throws IOException {
+		System.setProperty("java.awt.headless", "true");
+		MatchService service = new MatchService();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("port"))
+				service.port = Integer.parseInt(args[++i]);
+			else if (args[i].equals("workers"))
+				service.workers = Integer.parseInt(args[++i]);
+			else if (args[i].equals("queue"))
+				service.queueSize = Integer.parseInt(args[++i]);
+			else if (args[i].equals("depth"))
+				service.maxDepth = Integer.parseInt(args[++i]);
+		}
+		service.start();
+		System.out.println("listening on http://localhost:" + service.port + "/");
+	}
+
+} // end MatchService class
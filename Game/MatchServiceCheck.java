@@ -0,0 +1,100 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+/**
+ * Scripted check of MatchService: starts the service on a free loopback
+ * port and sends one request to each endpoint, checking the status, the
+ * shape of the answer and that searches much deeper and wider than their
+ * budget allows still answer on time. Prints a line per check and exits with status 1
+ * if any failed.
+ *
+ * Usage: java MatchServiceCheck [budget ms]
+ **/
+class MatchServiceCheck {
+
+	// one stone each in the middle, white to move
+	static final String BOARD = "...........................w........b...........................";
+
+	final HttpClient client = HttpClient.newHttpClient();
+	String base;
+	int failures;
+
+	void check(String name, boolean passed, String detail) {
+		System.out.println((passed ? "ok    " : "FAIL  ") + name + (passed ? "" : ": " + detail));
+		if (!passed)
+			failures++;
+	}
+
+	HttpResponse<String> get(String path) throws IOException, InterruptedException {
+		return client.send(HttpRequest.newBuilder(URI.create(base + path)).build(),
+				HttpResponse.BodyHandlers.ofString());
+	}
+
+	HttpResponse<String> post(String path, String body) throws IOException, InterruptedException {
+		return client.send(HttpRequest.newBuilder(URI.create(base + path))
+				.POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+	void run(long budget) throws IOException, InterruptedException {
+		MatchService service = new MatchService();
+		service.port = 0;
+		service.workers = 2;
+		// far deeper than any budget here allows, so only the deadline ends a search
+		service.maxDepth = 40;
+		service.start();
+		base = "http://localhost:" + service.port;
+		try {
+			// the first search loads and initialises the evaluation tables
+			get("/move?board=" + BOARD + "&budget=10");
+			long start = System.nanoTime();
+			HttpResponse<String> move = get("/move?board=" + BOARD + "&budget=" + budget + "&game=check");
+			long millis = (System.nanoTime() - start) / 1000000;
+			check("/move answers a move", move.statusCode() == 200 && move.body().contains("\"row\":"),
+					move.statusCode() + " " + move.body());
+			check("/move keeps to its budget", millis < budget + 250, millis + " ms for a " + budget + " ms budget");
+			check("/move rejects a bad board", get("/move?board=w").statusCode() == 400, "expected 400");
+
+			HttpResponse<String> batch = post("/analyse?budget=" + budget / 2, BOARD + "\n" + BOARD + "\n");
+			check("/analyse answers every board",
+					batch.statusCode() == 200 && batch.body().startsWith("[") && batch.body().split("\"row\":").length == 3,
+					batch.statusCode() + " " + batch.body());
+
+			HttpResponse<String> pv = get("/pv?board=" + BOARD + "&k=2&depth=3");
+			check("/pv streams a line per depth", pv.statusCode() == 200 && pv.body().trim().split("\n").length == 3,
+					pv.statusCode() + " " + pv.body());
+
+			start = System.nanoTime();
+			HttpResponse<String> wide = get("/pv?board=" + BOARD + "&k=64&depth=40&budget=" + budget);
+			millis = (System.nanoTime() - start) / 1000000;
+			check("/pv keeps to its budget", millis < budget + 250, millis + " ms for a " + budget + " ms budget");
+			String[] depths = wide.body().trim().split("\n");
+			check("/pv caps the lines at " + MatchService.MAX_PV,
+					wide.statusCode() == 200 && depths[depths.length - 1].split("\"row\":").length - 1 <= MatchService.MAX_PV,
+					wide.statusCode() + " " + depths[depths.length - 1]);
+
+			HttpResponse<String> metrics = get("/metrics");
+			check("/metrics counts the searches",
+					metrics.statusCode() == 200 && metrics.body().contains("\"searches\":6,"),
+					metrics.statusCode() + " " + metrics.body());
+		} finally {
+			service.stop();
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		System.setProperty("java.awt.headless", "true");
+		long budget = 300;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("budget"))
+				budget = Long.parseLong(args[++i]);
+		}
+		MatchServiceCheck check = new MatchServiceCheck();
+		check.run(budget);
+		System.out.println(check.failures == 0 ? "all checks passed" : check.failures + " checks failed");
+		System.exit(check.failures == 0 ? 0 : 1);
+	}
+
+} // end MatchServiceCheck class
@@ -0,0 +1,136 @@
+import java.awt.Color;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * One chooseMove call run on a worker thread, so the referee can stop
+ * waiting at a wall clock deadline instead of after the player returns. At
+ * the deadline the worker is interrupted, which a player may take as a
+ * request to stop searching, and the referee goes on without it. CPU time
+ * is that of the worker thread and is kept apart from wall time: a player
+ * that is descheduled or stalled by the collector uses wall time but not
+ * CPU time, and a player's own search threads are not counted. The best
+ * move of an AnytimePlayer is taken just before it is interrupted.
+ **/
+class MoveRequest {
+
+	private static final ThreadMXBean BEAN = ManagementFactory.getThreadMXBean();
+
+	// daemon threads, so a player that never returns cannot keep the JVM alive
+	static final ExecutorService WORKERS = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "Move request");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	final GomokuPlayer player;
+	final Color turn;
+	private Future<Move> future;
+	private volatile Thread worker;
+	private volatile boolean started;
+	private volatile long cpuStart;
+	private volatile long cpuUsed;
+	private long wallStart;
+	// counted down when chooseMove returns, a cancelled future is done before that
+	private final CountDownLatch finished = new CountDownLatch(1);
+
+	// set once the request is over
+	Move move;
+	// the best move an AnytimePlayer had published when it was cut off
+	Move published;
+	Exception error;
+	boolean timedOut;
+	long cpuNanos;
+	long wallNanos;
+
+	MoveRequest(GomokuPlayer player, Color turn) {
+		this.player = player;
+		this.turn = turn;
+	}
+
+	static boolean cpuTimeSupported() {
+		return BEAN.isThreadCpuTimeSupported() && BEAN.isCurrentThreadCpuTimeSupported();
+	}
+
+	/**
+	 * Starts chooseMove on a worker thread and returns at once
+	 */
+	MoveRequest start(Color[][] board) {
+		wallStart = System.nanoTime();
+		future = WORKERS.submit(() -> {
+			started = true;
+			// the start time is set before the worker is, await reads them the other way round
+			cpuStart = cpuTimeSupported() ? BEAN.getCurrentThreadCpuTime() : 0;
+			worker = Thread.currentThread();
+			try {
+				return player.chooseMove(board, turn);
+			} finally {
+				if (cpuTimeSupported())
+					cpuUsed = BEAN.getCurrentThreadCpuTime() - cpuStart;
+				worker = null;
+				finished.countDown();
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Waits for chooseMove to return, even after the request timed out
+	 *
+	 * @return true if it returned by the deadline
+	 */
+	boolean awaitFinished(long deadline) {
+		try {
+			return finished.await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Waits until the move is made or the deadline passes. A request still
+	 * running at the deadline is interrupted and left to finish on its own
+	 *
+	 * @param deadline System.nanoTime() by which the move is due
+	 * @return the move, or null if there was none in time
+	 */
+	Move await(long deadline) {
+		try {
+			move = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			cpuNanos = cpuUsed;
+		} catch (TimeoutException e) {
+			timedOut = true;
+			if (started && player instanceof AnytimePlayer)
+				published = ((AnytimePlayer) player).bestSoFar();
+			// read the CPU time before interrupting, the worker may be gone after
+			Thread thread = worker;
+			if (thread != null && cpuTimeSupported()) {
+				long now = BEAN.getThreadCpuTime(thread.getId());
+				if (now >= 0)
+					cpuNanos = now - cpuStart;
+			}
+			future.cancel(true);
+			// a request cancelled before it started never runs
+			if (!started)
+				finished.countDown();
+		} catch (ExecutionException e) {
+			cpuNanos = cpuUsed;
+			error = (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			timedOut = true;
+		}
+		wallNanos = System.nanoTime() - wallStart;
+		return move;
+	}
+
+} // end MoveRequest class
@@ -0,0 +1,194 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Small quantised network scoring positions from 128 stone features, one per
+ * cell and colour. The first layer is kept as an accumulator that every move
+ * updates by adding or subtracting one column of int16 weights, so only the
+ * two small int8 layers after it are computed per evaluation:
+ *
+ *   128 inputs -> HIDDEN int16 accumulator -> clipped relu
+ *              -> SECOND int8 layer -> clipped relu -> 1 int8 output
+ *
+ * The network file is big endian: the magic "GNN1", the ints HIDDEN, SECOND
+ * and output scale, then the first layer weights (input major) and biases as
+ * shorts, the second layer weights (neuron major) as bytes and biases as
+ * ints, and the output weights as bytes and bias as an int.
+ **/
+class NeuralEvaluator implements Evaluator {
+
+	static final int INPUTS = 128;
+	static final int MAGIC = ('G' << 24) | ('N' << 16) | ('N' << 8) | '1';
+	// activations are clipped to 0..127 so they fit the int8 layers
+	static final int ACTIVATION_MAX = 127;
+	// fixed point shift applied after each int8 layer
+	static final int SHIFT = 6;
+
+	/**
+	 * The quantised weights, shared by every evaluator using the network
+	 */
+	static class Network {
+		final int hidden;
+		final int second;
+		// multiplies the raw output into LineCache score units
+		final int outputScale;
+		final short[] firstWeights;
+		final short[] firstBias;
+		final byte[] secondWeights;
+		final int[] secondBias;
+		final byte[] outputWeights;
+		int outputBias;
+
+		Network(int hidden, int second, int outputScale) {
+			this.hidden = hidden;
+			this.second = second;
+			this.outputScale = outputScale;
+			firstWeights = new short[INPUTS * hidden];
+			firstBias = new short[hidden];
+			secondWeights = new byte[hidden * second];
+			secondBias = new int[second];
+			outputWeights = new byte[second];
+		}
+
+		static Network load(Path path) throws IOException {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+				if (in.readInt() != MAGIC)
+					throw new IOException(path + " is not a network file");
+				Network net = new Network(in.readInt(), in.readInt(), in.readInt());
+				for (int i = 0; i < net.firstWeights.length; i++)
+					net.firstWeights[i] = in.readShort();
+				for (int i = 0; i < net.firstBias.length; i++)
+					net.firstBias[i] = in.readShort();
+				in.readFully(net.secondWeights);
+				for (int i = 0; i < net.secondBias.length; i++)
+					net.secondBias[i] = in.readInt();
+				in.readFully(net.outputWeights);
+				net.outputBias = in.readInt();
+				return net;
+			}
+		}
+
+		/**
+		 * @return a hash of the layer sizes and every weight
+		 */
+		long fingerprint() {
+			long hash = Zobrist.mix(((long) hidden << 32) ^ ((long) second << 16) ^ outputScale);
+			hash = Zobrist.mix(hash ^ Arrays.hashCode(firstWeights));
+			hash = Zobrist.mix(hash ^ Arrays.hashCode(firstBias));
+			hash = Zobrist.mix(hash ^ Arrays.hashCode(secondWeights));
+			hash = Zobrist.mix(hash ^ Arrays.hashCode(secondBias));
+			hash = Zobrist.mix(hash ^ Arrays.hashCode(outputWeights));
+			return Zobrist.mix(hash ^ outputBias);
+		}
+
+		void save(Path path) throws IOException {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(hidden);
+				out.writeInt(second);
+				out.writeInt(outputScale);
+				for (short w : firstWeights)
+					out.writeShort(w);
+				for (short b : firstBias)
+					out.writeShort(b);
+				out.write(secondWeights);
+				for (int b : secondBias)
+					out.writeInt(b);
+				out.write(outputWeights);
+				out.writeInt(outputBias);
+			}
+		}
+
+		/**
+		 * Small random weights, only useful for benchmarking speed
+		 */
+		static Network random(int hidden, int second, long seed) {
+			Random random = new Random(seed);
+			Network net = new Network(hidden, second, 16);
+			for (int i = 0; i < net.firstWeights.length; i++)
+				net.firstWeights[i] = (short) (random.nextInt(65) - 32);
+			for (int i = 0; i < net.secondWeights.length; i++)
+				net.secondWeights[i] = (byte) (random.nextInt(33) - 16);
+			for (int i = 0; i < net.outputWeights.length; i++)
+				net.outputWeights[i] = (byte) (random.nextInt(33) - 16);
+			return net;
+		}
+	}
+
+	final Network net;
+	// first layer sums for the current position, biases included
+	final int[] accumulator;
+	private final int[] secondLayer;
+
+	NeuralEvaluator(Network net) {
+		this.net = net;
+		accumulator = new int[net.hidden];
+		secondLayer = new int[net.second];
+		reset(null);
+	}
+
+	static int feature(int cell, int code) {
+		return cell * 2 + (code == LineCache.WHITE ? 1 : 0);
+	}
+
+	public Evaluator copy() {
+		return new NeuralEvaluator(net);
+	}
+
+	public long fingerprint() {
+		return Zobrist.mix(getClass().getName().hashCode() ^ net.fingerprint());
+	}
+
+	public void reset(LineCache lines) {
+		for (int j = 0; j < net.hidden; j++)
+			accumulator[j] = net.firstBias[j];
+		if (lines == null)
+			return;
+		for (long bits = lines.white; bits != 0; bits &= bits - 1)
+			makeMove(Long.numberOfTrailingZeros(bits), LineCache.WHITE);
+		for (long bits = lines.black; bits != 0; bits &= bits - 1)
+			makeMove(Long.numberOfTrailingZeros(bits), LineCache.BLACK);
+	}
+
+	public void makeMove(int cell, int code) {
+		int offset = feature(cell, code) * net.hidden;
+		short[] weights = net.firstWeights;
+		for (int j = 0; j < net.hidden; j++)
+			accumulator[j] += weights[offset + j];
+	}
+
+	public void unmakeMove(int cell, int code) {
+		int offset = feature(cell, code) * net.hidden;
+		short[] weights = net.firstWeights;
+		for (int j = 0; j < net.hidden; j++)
+			accumulator[j] -= weights[offset + j];
+	}
+
+	static int clip(int value) {
+		return value < 0 ? 0 : value > ACTIVATION_MAX ? ACTIVATION_MAX : value;
+	}
+
+	public int evaluate() {
+		int hidden = net.hidden;
+		byte[] weights = net.secondWeights;
+		for (int k = 0; k < net.second; k++) {
+			int sum = net.secondBias[k];
+			int offset = k * hidden;
+			for (int j = 0; j < hidden; j++)
+				sum += clip(accumulator[j]) * weights[offset + j];
+			secondLayer[k] = clip(sum >> SHIFT);
+		}
+		int output = net.outputBias;
+		for (int k = 0; k < net.second; k++)
+			output += secondLayer[k] * net.outputWeights[k];
+		return output * net.outputScale;
+	}
+
+} // end NeuralEvaluator class
@@ -0,0 +1,41 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Player searching with the NeuralEvaluator instead of the line patterns.
+ * The network is read from the file named by -Dnetwork, network.bin by
+ * default. Without a trained network there is nothing to play with, so the
+ * constructor refuses and the player cannot be picked as an opponent by
+ * mistake; benchmarks pass a random network in themselves.
+ **/
+class NeuralPlayer extends Player {
+
+	// null when there is no readable network file
+	static final NeuralEvaluator.Network NETWORK = loadNetwork(System.getProperty("network", "network.bin"));
+
+	static NeuralEvaluator.Network loadNetwork(String file) {
+		Path path = Paths.get(file);
+		if (Files.exists(path)) {
+			try {
+				return NeuralEvaluator.Network.load(path);
+			} catch (IOException e) {
+				System.err.println("Cannot read network " + file + ": " + e);
+			}
+		}
+		return null;
+	}
+
+	NeuralPlayer() {
+		this(NETWORK);
+	}
+
+	NeuralPlayer(NeuralEvaluator.Network network) {
+		if (network == null)
+			throw new IllegalStateException("No network file " + System.getProperty("network", "network.bin")
+					+ ", set -Dnetwork to a trained network");
+		evaluator = new NeuralEvaluator(network);
+	}
+
+} // end NeuralPlayer class
@@ -0,0 +1,53 @@
+import java.awt.Color;
+
+/**
+ * Check that NeuralPlayer sees the end of the game: whatever its network
+ * makes of quiet positions, it must take a five it can make and block one
+ * it faces. Runs positions in the TacticalSuite format against players with
+ * random networks, with and without the quiescence search, and exits with
+ * status 1 if any position was not solved.
+ *
+ * Usage: java NeuralPlayerCheck [networks n] [depth d]
+ **/
+class NeuralPlayerCheck {
+
+	static final String[] POSITIONS = {
+			".........................wwww....bb..........b........b......... w; bm 3,0 3,5; id \"make five along a row\"",
+			"b..........................w.......wb......wb......wb........... w; bm 2,3 7,3; id \"make five along a column\"",
+			".........wbb......w........w........w...........b..............b w; bm 0,0 5,5; id \"make five along a diagonal\"",
+			".................ww.............wbbbb.........w................. w; bm 4,5; id \"block a four\"",
+			"w......w......b......b......b.....wb.....w......w..............b w; bm 5,2; id \"block a four on a diagonal\"" };
+
+	public static void main(String[] args) {
+		int networks = 3, depth = 2;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("networks"))
+				networks = Integer.parseInt(args[++i]);
+			else if (args[i].equals("depth"))
+				depth = Integer.parseInt(args[++i]);
+		}
+		int failures = 0;
+		for (int seed = 1; seed <= networks; seed++) {
+			NeuralEvaluator.Network network = NeuralEvaluator.Network.random(64, 16, seed);
+			for (boolean quiescence : new boolean[] { true, false }) {
+				for (String line : POSITIONS) {
+					TacticalSuite.Position position = TacticalSuite.parse(line);
+					NeuralPlayer player = new NeuralPlayer(network);
+					player.verbose = false;
+					player.store = null;
+					player.depth = depth;
+					player.quiescence = quiescence;
+					Move move = player.chooseMove(position.board, position.toMove);
+					boolean passed = position.solvedBy(move);
+					System.out.printf("%s%-28s network %d%s: %d,%d%n", passed ? "ok    " : "FAIL  ", position.id, seed,
+							quiescence ? "" : ", no quiescence", move.row, move.col);
+					if (!passed)
+						failures++;
+				}
+			}
+		}
+		System.out.println(failures == 0 ? "all positions solved" : failures + " positions failed");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+} // end NeuralPlayerCheck class
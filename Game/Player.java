@@ -6,25 +6,218 @@
 import java.awt.Color;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * This gomoku player uses the minimax algorithm and a heuristic evaluation
  **/
-class Player extends GomokuPlayer {
+class Player extends GomokuPlayer implements TrustedPlayer, AnytimePlayer {
+
+	// print every move and its score
+	boolean verbose = true;
+	// score of the last move chosen, from white's point of view, and the depth it was searched to
+	int lastScore;
+	int lastDepth;
+	// replaces the line cache patterns at the leaves when set
+	Evaluator evaluator;
+	// positions visited by the last search
+	long nodes;
+	// children of a frontier node and their scores
+	final int[] frontierCells = new int[64];
+	final int[] frontierScores = new int[64];
+	// children a frontier node searches on, by index
+	final int[] frontierOrder = new int[64];
+	// search depth, and threads sharing the root moves
+	int depth = 4;
+	int threads = 1;
+	// shared by the threads of a search and kept between moves when set
+	TranspositionTable table;
+	// extend the leaves with forcing moves, at most quiescenceLimit extra nodes per leaf so
+	// the result does not depend on the order leaves are visited in; without
+	// quiescenceFours only fives and blocks of fours are played
+	boolean quiescence = true;
+	boolean quiescenceFours = true;
+	int quiescenceLimit = 16;
+	long quiescenceNodes;
+	private int quiescenceLeft;
+	// longest run of forcing moves followed below the horizon
+	static final int QUIESCENCE_PLIES = 8;
+	// selective search: order moves by the static score of the child, reduce
+	// late quiet moves by a ply, skip quiet moves that cannot reach the window
+	// near the leaves, and keep at most candidates moves per node (0 for all)
+	boolean ordering = true;
+	boolean reductions = true;
+	boolean futility = true;
+	int candidates;
+	// first move index that is reduced, and the futility margin per ply of depth left
+	int lateMoves = 4;
+	int futilityMargin = 150;
+	private ExecutorService pool;
+	// set from another thread to stop the search, an interrupt of the searching
+	// thread does the same; either way the search unwinds within a few nodes
+	volatile boolean stop;
+	private boolean stopped;
+	// wall clock milliseconds a move may take, 0 for no limit; at the limit the
+	// search stops as if told to, so an anytime search plays its deepest result
+	long timeLimit;
+	private long deadline;
+	// the player whose root moves a worker searches, its stop and deadline apply
+	private Player parent;
+	// deepen one ply at a time up to depth, publishing the move of every
+	// completed depth, and play the last one when stopped
+	boolean anytime;
+	private volatile Move published;
+	// results for root positions kept between runs, from -Dstore unless set;
+	// a stored exact result at least as deep as depth is played without searching,
+	// if it was stored by a player with the same fingerprint
+	AnalysisStore store = AnalysisStore.shared();
+	private long engine;
 
 	public Move chooseMove(Color[][] board, Color me) {
+		published = null;
 		// Check if no moves have been played
 		if (noMoves(board)) {
 			// Then play in the middle
-			return new Move(GomokuBoard.ROWS / 2 - 1, GomokuBoard.COLS / 2 - 1);
+			lastScore = 0;
+			published = new Move(GomokuBoard.ROWS / 2 - 1, GomokuBoard.COLS / 2 - 1);
+			return published;
+		}
+		SearchEvents.ChooseMove event = new SearchEvents.ChooseMove();
+		event.begin();
+		// search on a private copy so stones can be placed and taken back in place
+		Color[][] searchBoard = copyBoard(board);
+		LineCache lines = new LineCache(searchBoard);
+		if (evaluator != null)
+			evaluator.reset(lines);
+		nodes = 0;
+		quiescenceNodes = 0;
+		stopped = false;
+		deadline = (timeLimit > 0) ? System.nanoTime() + timeLimit * 1000000 : 0;
+		if (table != null)
+			table.newSearch();
+		lastDepth = depth;
+		if (store != null)
+			engine = fingerprint();
+		int[] move = (store != null) ? lookUp(lines, me) : null;
+		if (move == null) {
+			move = anytime ? deepen(searchBoard, lines, me) : search(searchBoard, lines, me, depth);
+			if (store != null && move != null && (!stopped || anytime)) {
+				store.store(lines.white, lines.black, me, engine, lastDepth, TranspositionTable.EXACT, move[2],
+						move[0] * 8 + move[1]);
+			}
+		}
+		// a search stopped before it had a result, any legal move will do
+		if (move == null || (stopped && !anytime)) {
+			move = getMove(generateMoves(searchBoard, me).get(0));
+			move = new int[] { move[0], move[1], 0 };
 		}
-		int[] move = minimax(board, me, 4, Integer.MIN_VALUE, Integer.MAX_VALUE);
-		System.out.println("Move: " + move[0] + "," + move[1] + " with score of " + move[2]);
-		return new Move(move[0], move[1]);
+		lastScore = move[2];
+		if (verbose)
+			System.out.println("Move: " + move[0] + "," + move[1] + " with score of " + move[2]);
+		published = new Move(move[0], move[1]);
+		if (event.shouldCommit()) {
+			event.player = getClass().getName();
+			event.colour = (me == Color.WHITE) ? "White" : "Black";
+			event.depth = lastDepth;
+			event.nodes = nodes;
+			event.score = lastScore;
+			event.move = published.toString();
+			event.stopped = stopped;
+			event.commit();
+		}
+		return published;
 	} // end chooseMove method
 
+	int[] search(Color[][] board, LineCache lines, Color me, int depth) {
+		if (threads > 1)
+			return splitRoot(board, lines, me, depth);
+		return minimax(board, lines, me, depth, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Iterative deepening for anytime play. Stops early once a depth finds a
+	 * five coming for the side to move, so the quickest win is played; a side
+	 * that is losing keeps searching for the longest defence
+	 *
+	 * @return the result of the deepest completed depth, or null if none completed
+	 */
+	int[] deepen(Color[][] board, LineCache lines, Color me) {
+		int[] best = null;
+		lastDepth = 0;
+		for (int d = 1; d <= depth; d++) {
+			SearchEvents.Iteration event = new SearchEvents.Iteration();
+			event.begin();
+			int[] move = search(board, lines, me, d);
+			if (stopped)
+				break;
+			best = move;
+			lastDepth = d;
+			published = new Move(move[0], move[1]);
+			if (event.shouldCommit()) {
+				event.depth = d;
+				event.nodes = nodes;
+				event.score = move[2];
+				event.move = published.toString();
+				event.commit();
+			}
+			if ((me == Color.WHITE ? move[2] : -move[2]) >= LineCache.WEIGHTS[0] / 2)
+				break;
+		}
+		return best;
+	}
+
+	/**
+	 * Looks the root position up in the store. An anytime search only takes
+	 * the stored move as its first published move
+	 *
+	 * @return the stored result if it is deep enough to play, else null
+	 */
+	int[] lookUp(LineCache lines, Color me) {
+		long entry = store.probe(lines.white, lines.black, me, engine);
+		int cell = TranspositionTable.move(entry);
+		if (entry == TranspositionTable.MISS || cell == TranspositionTable.NO_MOVE
+				|| TranspositionTable.bound(entry) != TranspositionTable.EXACT
+				|| ((lines.white | lines.black) & (1L << cell)) != 0)
+			return null;
+		if (anytime) {
+			published = new Move(cell / 8, cell % 8);
+			return null;
+		}
+		if (TranspositionTable.depth(entry) < depth)
+			return null;
+		lastDepth = TranspositionTable.depth(entry);
+		return new int[] { cell / 8, cell % 8, TranspositionTable.score(entry) };
+	}
+
+	/**
+	 * @return a hash of everything besides the depth that changes what a
+	 *         search returns: the player and evaluator classes, the weights
+	 *         and the search flags
+	 */
+	long fingerprint() {
+		long hash = Zobrist.mix(getClass().getName().hashCode());
+		hash = Zobrist.mix(hash ^ ((evaluator == null) ? 0 : evaluator.fingerprint()));
+		for (int weight : LineCache.WEIGHTS)
+			hash = Zobrist.mix(hash ^ weight);
+		int[] settings = { quiescence ? 1 : 0, quiescenceFours ? 1 : 0, quiescenceLimit, ordering ? 1 : 0,
+				reductions ? 1 : 0, futility ? 1 : 0, candidates, lateMoves, futilityMargin };
+		for (int setting : settings)
+			hash = Zobrist.mix(hash ^ setting);
+		return hash;
+	}
+
+	public Move bestSoFar() {
+		return published;
+	}
+
 	/**
 	 * Checks to see if no moves have been played
 	 */
@@ -62,38 +255,98 @@ class Player extends GomokuPlayer {
 		}
 
 		// weight the scores
-		int totalScore = won * 100000 + oneAway * 100 + twoAway * 5 + threeAway * 1;
+		int[] weights = LineCache.WEIGHTS;
+		int totalScore = won * weights[0] + oneAway * weights[1] + twoAway * weights[2] + threeAway * weights[3];
 		return totalScore;
 	}
 
 	/**
-	 * Minimax algorithm with alpha-beta pruning
+	 * Minimax algorithm with alpha-beta pruning, moves are made and unmade on
+	 * the board and line cache rather than copying the board for every child
 	 */
-	int[] minimax(Color[][] board, Color me, int depth, int alpha, int beta) {
+	int[] minimax(Color[][] board, LineCache lines, Color me, int depth, int alpha, int beta) {
+		nodes++;
+		if ((nodes & 1023) == 0) {
+			checkpoint(depth, alpha, beta);
+		}
+		if (stopped) {
+			return new int[] { -1, -1, 0 };
+		}
+		if (depth == 0) {
+			if (!quiescence)
+				return new int[] { -1, -1, evaluate(lines) };
+			quiescenceLeft = quiescenceLimit;
+			return new int[] { -1, -1, quiesce(board, lines, me, alpha, beta, 0) };
+		}
+		// once a side has five the game is over, the quiescence search never plays on;
+		// nor does an evaluator's search, which only scores a five as evaluate does here
+		if ((quiescence || evaluator != null) && lines.fives != 0) {
+			return new int[] { -1, -1, evaluate(lines) };
+		}
+		// the table is skipped next to the leaves where searching is cheaper
+		long key = 0;
+		int hashMove = TranspositionTable.NO_MOVE;
+		if (table != null && depth >= 2) {
+			key = (me == Color.WHITE) ? lines.hash : lines.hash ^ Zobrist.BLACK_TO_MOVE;
+			long entry = table.probe(key);
+			if (entry != TranspositionTable.MISS) {
+				hashMove = TranspositionTable.move(entry);
+				int score = TranspositionTable.score(entry);
+				int bound = TranspositionTable.bound(entry);
+				if (TranspositionTable.depth(entry) >= depth && hashMove != TranspositionTable.NO_MOVE
+						&& (bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER && score >= beta)
+								|| (bound == TranspositionTable.UPPER && score <= alpha))) {
+					return new int[] { hashMove / 8, hashMove % 8, score };
+				}
+			}
+		}
+		int alphaStart = alpha, betaStart = beta;
 		int[] bestScore = new int[3];
-		ArrayList<String> moveList;
-		Set<String> moveListSet = new HashSet<String>();
-		ArrayList<String> moves = getPlayerMoves(board, me);
-		for (String move : moves) {
-			moveListSet.addAll(getNearMoves(board, move));
+		ArrayList<String> moveList = generateMoves(board, me);
+		// no moves left, scored for white as white is the maximising player
+		if (moveList.isEmpty()) {
+			return new int[] { -1, -1, evaluate(lines) };
 		}
-		moveListSet.retainAll(getEmpties(board));
-
-		if (moveListSet.isEmpty())
-			moveList = new ArrayList<String>(getEmpties(board));
-		else
-			moveList = new ArrayList<String>(moveListSet);
-		// reach required depth
-		if (moveList.isEmpty() || depth == 0) {
-			return new int[] { -1, -1, evaluate(board, me) };
+		// the batched last ply scores children statically, searching on only from forcing ones
+		if (depth == 1) {
+			return frontier(board, lines, me, moveList, alpha, beta);
+		}
+		// static score of each child by cell, and the cells that make or stop a threat
+		int[] local = null;
+		long forcing = 0;
+		if (ordering || reductions || futility || candidates > 0) {
+			forcing = forcingCells(lines, me);
+			local = new int[64];
+			orderMoves(lines, me, moveList, local, forcing);
+		}
+		// search the best move stored for this position first
+		if (hashMove != TranspositionTable.NO_MOVE) {
+			String move = (hashMove / 8) + " " + (hashMove % 8);
+			if (moveList.remove(move))
+				moveList.add(0, move);
 		}
 		if (me == Color.WHITE) {
 			int[] score = new int[] { -1, -1, Integer.MIN_VALUE };
 			bestScore[2] = Integer.MIN_VALUE;
-			for (String move : moveList) {
+			for (int i = 0; i < moveList.size(); i++) {
 				// add new move to board
-				int[] newMove = getMove(move);
-				score = minimax(addMove(board, newMove, me), Color.BLACK, depth - 1, alpha, beta);
+				int[] newMove = getMove(moveList.get(i));
+				int cell = newMove[0] * 8 + newMove[1];
+				boolean quiet = local != null && (forcing & (1L << cell)) == 0;
+				// near the leaves a quiet move this far below alpha will not catch up; the
+				// best score is raised to what it might reach, so a fail low stays a sound bound
+				if (futility && quiet && i > 0 && depth <= 2 && local[cell] + futilityMargin * depth <= alpha) {
+					bestScore[2] = Math.max(bestScore[2], local[cell] + futilityMargin * depth);
+					continue;
+				}
+				int reduction = (reductions && quiet && depth >= 3 && i >= lateMoves) ? 1 : 0;
+				makeMove(board, lines, newMove, me);
+				score = minimax(board, lines, Color.BLACK, depth - 1 - reduction, alpha, beta);
+				// a reduced move that raises alpha is searched again at full depth
+				if (reduction > 0 && score[2] > alpha) {
+					score = minimax(board, lines, Color.BLACK, depth - 1, alpha, beta);
+				}
+				unmakeMove(board, lines, newMove, me);
 				if (score[2] > bestScore[2]) {
 					bestScore[0] = newMove[0];
 					bestScore[1] = newMove[1];
@@ -105,14 +358,25 @@ class Player extends GomokuPlayer {
 					break;
 				}
 			}
-			return new int[] { bestScore[0], bestScore[1], bestScore[2] };
 		} else {
 			int[] score = new int[] { -1, -1, Integer.MAX_VALUE };
 			bestScore[2] = Integer.MAX_VALUE;
-			for (String move : moveList) {
+			for (int i = 0; i < moveList.size(); i++) {
 				// add new move to board
-				int[] newMove = getMove(move);
-				score = minimax(addMove(board, newMove, me), Color.WHITE, depth - 1, alpha, beta);
+				int[] newMove = getMove(moveList.get(i));
+				int cell = newMove[0] * 8 + newMove[1];
+				boolean quiet = local != null && (forcing & (1L << cell)) == 0;
+				if (futility && quiet && i > 0 && depth <= 2 && local[cell] - futilityMargin * depth >= beta) {
+					bestScore[2] = Math.min(bestScore[2], local[cell] - futilityMargin * depth);
+					continue;
+				}
+				int reduction = (reductions && quiet && depth >= 3 && i >= lateMoves) ? 1 : 0;
+				makeMove(board, lines, newMove, me);
+				score = minimax(board, lines, Color.WHITE, depth - 1 - reduction, alpha, beta);
+				if (reduction > 0 && score[2] < beta) {
+					score = minimax(board, lines, Color.WHITE, depth - 1, alpha, beta);
+				}
+				unmakeMove(board, lines, newMove, me);
 				if (score[2] < bestScore[2]) {
 					bestScore[0] = newMove[0];
 					bestScore[1] = newMove[1];
@@ -123,8 +387,562 @@ class Player extends GomokuPlayer {
 					break;
 				}
 			}
-			return new int[] { bestScore[0], bestScore[1], bestScore[2] };
 		}
+		// the key is only made where the table is probed
+		if (table != null && depth >= 2 && !stopped) {
+			int value = bestScore[2];
+			int bound = (value <= alphaStart) ? TranspositionTable.UPPER
+					: (value >= betaStart) ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+			table.store(key, depth, bound, value, bestScore[0] * 8 + bestScore[1]);
+		}
+		return new int[] { bestScore[0], bestScore[1], bestScore[2] };
+	}
+
+	/**
+	 * Every 1024 nodes: notices a request to stop and records a node sample,
+	 * kept out of minimax so the hot path stays small
+	 */
+	private void checkpoint(int depth, int alpha, int beta) {
+		stopped |= stop || Thread.currentThread().isInterrupted()
+				|| (deadline != 0 && System.nanoTime() - deadline > 0);
+		if (parent != null)
+			stopped |= parent.stop || (parent.deadline != 0 && System.nanoTime() - parent.deadline > 0);
+		SearchEvents.NodeSample sample = new SearchEvents.NodeSample();
+		if (sample.shouldCommit()) {
+			sample.depth = depth;
+			sample.alpha = alpha;
+			sample.beta = beta;
+			sample.nodes = nodes;
+			sample.commit();
+		}
+	}
+
+	/**
+	 * @return the cells where the side to move makes five, blocks five or makes a four
+	 */
+	static long forcingCells(LineCache lines, Color me) {
+		long own = (me == Color.WHITE) ? lines.white : lines.black;
+		long opp = (me == Color.WHITE) ? lines.black : lines.white;
+		return Threats.fives(own, opp) | Threats.fives(opp, own) | Threats.fours(own, opp);
+	}
+
+	/**
+	 * Sorts the moves best first for the side to move by the static score of
+	 * the child each one leads to, filling in local by cell. With a candidate
+	 * cap only the best candidates are kept, plus any forcing moves
+	 */
+	void orderMoves(LineCache lines, Color me, ArrayList<String> moveList, int[] local, long forcing) {
+		int count = moveList.size();
+		int[] cells = new int[count];
+		int[] scores = new int[count];
+		for (int i = 0; i < count; i++) {
+			int[] move = getMove(moveList.get(i));
+			cells[i] = move[0] * 8 + move[1];
+		}
+		lines.evaluateChildren(cells, count, LineCache.code(me), scores);
+		for (int i = 0; i < count; i++)
+			local[cells[i]] = scores[i];
+		if (ordering || candidates > 0) {
+			// insertion sort, stable so equal moves keep the generated order
+			String[] moves = moveList.toArray(new String[count]);
+			boolean max = (me == Color.WHITE);
+			for (int i = 1; i < count; i++) {
+				int cell = cells[i], score = scores[i];
+				String move = moves[i];
+				int j = i - 1;
+				while (j >= 0 && (max ? scores[j] < score : scores[j] > score)) {
+					cells[j + 1] = cells[j];
+					scores[j + 1] = scores[j];
+					moves[j + 1] = moves[j];
+					j--;
+				}
+				cells[j + 1] = cell;
+				scores[j + 1] = score;
+				moves[j + 1] = move;
+			}
+			moveList.clear();
+			for (String move : moves)
+				moveList.add(move);
+		}
+		if (candidates > 0 && count > candidates) {
+			for (int i = count - 1; i >= candidates; i--) {
+				if ((forcing & (1L << cells[i])) == 0)
+					moveList.remove(i);
+			}
+		}
+	}
+
+	/**
+	 * Quiescence search below the depth horizon, playing only forcing moves
+	 * until the position is quiet. A side that can make five does so; a side
+	 * facing a four must block it and cannot stand pat; otherwise the side to
+	 * move may take the static score or make a four of its own. Stops at
+	 * QUIESCENCE_PLIES and once the leaf's quiescenceLimit nodes are spent
+	 */
+	int quiesce(Color[][] board, LineCache lines, Color me, int alpha, int beta, int ply) {
+		nodes++;
+		quiescenceNodes++;
+		int standPat = evaluate(lines);
+		if (lines.fives != 0 || ply >= QUIESCENCE_PLIES || --quiescenceLeft < 0)
+			return standPat;
+		boolean max = (me == Color.WHITE);
+		Color other = max ? Color.BLACK : Color.WHITE;
+		long own = max ? lines.white : lines.black;
+		long opp = max ? lines.black : lines.white;
+		long wins = Threats.fives(own, opp);
+		if (wins != 0) {
+			int cell = Long.numberOfTrailingZeros(wins);
+			int[] move = { cell / 8, cell % 8 };
+			makeMove(board, lines, move, me);
+			int score = evaluate(lines);
+			unmakeMove(board, lines, move, me);
+			return score;
+		}
+		long moves = Threats.fives(opp, own);
+		int best;
+		if (moves != 0) {
+			best = max ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+		} else {
+			best = standPat;
+			if (max ? best >= beta : best <= alpha)
+				return best;
+			if (max)
+				alpha = Math.max(alpha, best);
+			else
+				beta = Math.min(beta, best);
+			moves = quiescenceFours ? Threats.fours(own, opp) : 0;
+		}
+		for (long bits = moves; bits != 0; bits &= bits - 1) {
+			int cell = Long.numberOfTrailingZeros(bits);
+			int[] move = { cell / 8, cell % 8 };
+			makeMove(board, lines, move, me);
+			int score = quiesce(board, lines, other, alpha, beta, ply + 1);
+			unmakeMove(board, lines, move, me);
+			if (max) {
+				best = Math.max(best, score);
+				alpha = Math.max(alpha, best);
+			} else {
+				best = Math.min(best, score);
+				beta = Math.min(beta, best);
+			}
+			if (beta <= alpha)
+				break;
+		}
+		return best;
+	}
+
+	/**
+	 * Searches the root moves in parallel. Each thread takes the next root move
+	 * in order and searches it on its own board copy with its own Player for
+	 * scratch space, starting from the best score found so far by any thread.
+	 * A root move searched against a bound that the final best score reached
+	 * only gives a bound, so any such move ahead of the best one is searched
+	 * again to see if it ties, which makes the move and score the same as the
+	 * serial search at the same depth. Late move reductions and futility
+	 * pruning depend on the window, so with them the split search can settle
+	 * on a different move of about the same score
+	 */
+	int[] splitRoot(Color[][] board, LineCache lines, Color me, int depth) {
+		ArrayList<String> moveList = generateMoves(board, me);
+		if (moveList.isEmpty() || depth < 2) {
+			return minimax(board, lines, me, depth, Integer.MIN_VALUE, Integer.MAX_VALUE);
+		}
+		// the same root order as minimax, ties go to the first move
+		if (ordering || candidates > 0) {
+			orderMoves(lines, me, moveList, new int[64], forcingCells(lines, me));
+		}
+		boolean max = (me == Color.WHITE);
+		Color other = max ? Color.BLACK : Color.WHITE;
+		int count = moveList.size();
+		int[][] rootMoves = new int[count][];
+		for (int i = 0; i < count; i++) {
+			rootMoves[i] = getMove(moveList.get(i));
+		}
+		int[] scores = new int[count];
+		int[] bounds = new int[count];
+		AtomicInteger best = new AtomicInteger(max ? Integer.MIN_VALUE : Integer.MAX_VALUE);
+		AtomicInteger next = new AtomicInteger();
+		Player[] workers = new Player[threads];
+		List<Future<?>> tasks = new ArrayList<Future<?>>();
+		if (pool == null) {
+			pool = Executors.newFixedThreadPool(threads, runnable -> {
+				Thread thread = new Thread(runnable, "Player search");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		for (int t = 0; t < threads; t++) {
+			Player worker = newWorker();
+			workers[t] = worker;
+			Color[][] workerBoard = copyBoard(board);
+			LineCache workerLines = new LineCache(workerBoard);
+			if (worker.evaluator != null)
+				worker.evaluator.reset(workerLines);
+			tasks.add(pool.submit(() -> {
+				for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+					int bound = best.get();
+					worker.makeMove(workerBoard, workerLines, rootMoves[i], me);
+					int score = max
+							? worker.minimax(workerBoard, workerLines, other, depth - 1, bound, Integer.MAX_VALUE)[2]
+							: worker.minimax(workerBoard, workerLines, other, depth - 1, Integer.MIN_VALUE, bound)[2];
+					worker.unmakeMove(workerBoard, workerLines, rootMoves[i], me);
+					scores[i] = score;
+					bounds[i] = bound;
+					best.accumulateAndGet(score, max ? Math::max : Math::min);
+				}
+			}));
+		}
+		boolean interrupted = false;
+		for (Future<?> task : tasks) {
+			while (true) {
+				try {
+					task.get();
+					break;
+				} catch (InterruptedException e) {
+					// stop the workers and wait for them to unwind
+					interrupted = true;
+					for (Player worker : workers)
+						worker.stop = true;
+				} catch (ExecutionException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		for (Player worker : workers) {
+			nodes += worker.nodes;
+			stopped |= worker.stopped;
+		}
+		if (stopped) {
+			return new int[] { rootMoves[0][0], rootMoves[0][1], 0 };
+		}
+		// a score beyond the bound it was searched with is exact
+		int value = max ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+		int chosen = -1;
+		for (int i = 0; i < count; i++) {
+			boolean exact = max ? scores[i] > bounds[i] : scores[i] < bounds[i];
+			if (exact && (chosen < 0 || (max ? scores[i] > value : scores[i] < value))) {
+				value = scores[i];
+				chosen = i;
+			}
+		}
+		// the serial search keeps the first move reaching the best score
+		for (int i = 0; i < chosen; i++) {
+			boolean exact = max ? scores[i] > bounds[i] : scores[i] < bounds[i];
+			if (!exact && scores[i] == value) {
+				makeMove(board, lines, rootMoves[i], me);
+				int score = max ? minimax(board, lines, other, depth - 1, value - 1, Integer.MAX_VALUE)[2]
+						: minimax(board, lines, other, depth - 1, Integer.MIN_VALUE, value + 1)[2];
+				unmakeMove(board, lines, rootMoves[i], me);
+				if (score == value) {
+					chosen = i;
+					break;
+				}
+			}
+		}
+		return new int[] { rootMoves[chosen][0], rootMoves[chosen][1], value };
+	}
+
+	/**
+	 * Multi-PV analysis: deepens one ply at a time up to maxDepth and hands
+	 * the k best root moves, with scores and principal variations, to the
+	 * listener as each depth completes. Once stopped, the depth in progress
+	 * is dropped
+	 *
+	 * @return the analysis of the deepest completed search, or null
+	 */
+	Analysis analyse(Color[][] board, Color me, int k, int maxDepth, Consumer<Analysis> listener) {
+		Color[][] searchBoard = copyBoard(board);
+		LineCache lines = new LineCache(searchBoard);
+		if (evaluator != null)
+			evaluator.reset(lines);
+		Analysis analysis = null;
+		stopped = false;
+		// analysis is bounded by maxDepth, not by the move time limit
+		deadline = 0;
+		for (int d = 1; d <= maxDepth; d++) {
+			long start = System.nanoTime();
+			nodes = 0;
+			Analysis deeper = multiPv(searchBoard, lines, me, d, k);
+			if (stopped)
+				break;
+			analysis = deeper;
+			analysis.nodes = nodes;
+			analysis.micros = (System.nanoTime() - start) / 1000;
+			if (listener != null)
+				listener.accept(analysis);
+		}
+		return analysis;
+	}
+
+	/**
+	 * Searches every root move, keeping the k best. Until k moves are known
+	 * each is searched with a full window; after that the window starts just
+	 * short of the k-th best score, so a move that cannot enter the list is
+	 * cut off as early as a normal alpha-beta search would cut it, and a move
+	 * that reaches the window gets an exact score. Ties keep the move
+	 * generation order
+	 */
+	Analysis multiPv(Color[][] board, LineCache lines, Color me, int depth, int k) {
+		Analysis analysis = new Analysis(depth);
+		ArrayList<String> moveList = generateMoves(board, me);
+		boolean max = (me == Color.WHITE);
+		Color other = max ? Color.BLACK : Color.WHITE;
+		List<int[]> top = new ArrayList<int[]>();
+		for (String move : moveList) {
+			int[] newMove = getMove(move);
+			boolean full = top.size() < k;
+			int bound = full ? (max ? Integer.MIN_VALUE : Integer.MAX_VALUE)
+					: (max ? top.get(k - 1)[2] - 1 : top.get(k - 1)[2] + 1);
+			makeMove(board, lines, newMove, me);
+			int score = max ? minimax(board, lines, other, depth - 1, bound, Integer.MAX_VALUE)[2]
+					: minimax(board, lines, other, depth - 1, Integer.MIN_VALUE, bound)[2];
+			unmakeMove(board, lines, newMove, me);
+			if (full || (max ? score > bound : score < bound)) {
+				int at = top.size();
+				while (at > 0 && (max ? score > top.get(at - 1)[2] : score < top.get(at - 1)[2]))
+					at--;
+				top.add(at, new int[] { newMove[0], newMove[1], score });
+				if (top.size() > k)
+					top.remove(k);
+			}
+		}
+		for (int[] move : top)
+			analysis.lines.add(new Analysis.Line(move[0], move[1], move[2],
+					principalVariation(board, lines, move, me, depth)));
+		return analysis;
+	}
+
+	/**
+	 * Follows the best reply at each ply after the root move, searching each
+	 * reply with the depth left, and restores the board afterwards
+	 */
+	int[] principalVariation(Color[][] board, LineCache lines, int[] rootMove, Color me, int depth) {
+		int[][] played = new int[depth][];
+		Color[] colours = new Color[depth];
+		played[0] = rootMove;
+		colours[0] = me;
+		makeMove(board, lines, rootMove, me);
+		int length = 1;
+		Color turn = (me == Color.WHITE) ? Color.BLACK : Color.WHITE;
+		for (int left = depth - 1; left > 0 && !lines.hasFive(Color.WHITE) && !lines.hasFive(Color.BLACK); left--) {
+			int[] reply = minimax(board, lines, turn, left, Integer.MIN_VALUE, Integer.MAX_VALUE);
+			if (reply[0] < 0)
+				break;
+			played[length] = reply;
+			colours[length++] = turn;
+			makeMove(board, lines, reply, turn);
+			turn = (turn == Color.WHITE) ? Color.BLACK : Color.WHITE;
+		}
+		int[] pv = new int[length];
+		for (int i = length - 1; i >= 0; i--) {
+			pv[i] = played[i][0] * 8 + played[i][1];
+			unmakeMove(board, lines, played[i], colours[i]);
+		}
+		return pv;
+	}
+
+	/**
+	 * Player with the same settings and its own scratch space and evaluator
+	 */
+	Player newWorker() {
+		Player worker = new Player();
+		worker.verbose = false;
+		worker.parent = this;
+		worker.evaluator = (evaluator == null) ? null : evaluator.copy();
+		worker.table = table;
+		worker.quiescence = quiescence;
+		worker.quiescenceFours = quiescenceFours;
+		worker.quiescenceLimit = quiescenceLimit;
+		worker.ordering = ordering;
+		worker.reductions = reductions;
+		worker.futility = futility;
+		worker.candidates = candidates;
+		worker.lateMoves = lateMoves;
+		worker.futilityMargin = futilityMargin;
+		return worker;
+	}
+
+	/**
+	 * Empty cells next to the player's stones, or every empty cell if there are none
+	 */
+	ArrayList<String> generateMoves(Color[][] board, Color me) {
+		Set<String> moveListSet = new HashSet<String>();
+		ArrayList<String> moves = getPlayerMoves(board, me);
+		for (String move : moves) {
+			moveListSet.addAll(getNearMoves(board, move));
+		}
+		moveListSet.retainAll(getEmpties(board));
+
+		if (moveListSet.isEmpty())
+			return new ArrayList<String>(getEmpties(board));
+		return new ArrayList<String>(moveListSet);
+	}
+
+	/**
+	 * The last ply of minimax: every child is scored in one batch from the line
+	 * cache deltas, or by the evaluator, then visited in the original order
+	 * with the same cutoff so the result matches searching them one by one.
+	 *
+	 * With quiescence, quiet children are visited first and the rest after
+	 * them, best static score first. The children are those quiesce would
+	 * play: the fives when there are any, else the blocks of the other side's fives. A child
+	 * left with a five to make or to stop is searched on by quiesce, and so is
+	 * one leaving the other side a four with quiescenceFours, unless its
+	 * static score already fails the window, as the other side's fours can
+	 * only lower it. Every other child is quiet and keeps its batch score,
+	 * which is what quiesce would return for it
+	 */
+	int[] frontier(Color[][] board, LineCache lines, Color me, ArrayList<String> moveList, int alpha, int beta) {
+		long own = (me == Color.WHITE) ? lines.white : lines.black;
+		long opp = (me == Color.WHITE) ? lines.black : lines.white;
+		long ownFives = (quiescence || evaluator != null) ? Threats.fives(own, opp) : 0;
+		long played = -1L, forcing = 0, fours = 0;
+		if (quiescence) {
+			long oppFives = Threats.fives(opp, own);
+			if (ownFives != 0) {
+				played = ownFives;
+			} else {
+				if (oppFives != 0) {
+					played = oppFives;
+					// a second five of the other side's survives the block
+					if (Long.bitCount(oppFives) > 1)
+						forcing = -1L;
+				}
+				// a new four of own's leaves a five to stop
+				forcing |= Threats.fours(own, opp);
+				if (quiescenceFours)
+					fours = ~Threats.blockingFours(opp, own) & ~forcing;
+			}
+		}
+		int count = frontierChildren(moveList, played);
+		if (count == 0) {
+			// the cells quiesce would play are all next to stones, so this is only a guard
+			count = frontierChildren(moveList, -1L);
+			forcing = -1L;
+		}
+		nodes += count;
+		if (evaluator == null)
+			lines.evaluateChildren(frontierCells, count, LineCache.code(me), frontierScores);
+		else {
+			evaluator.evaluateChildren(frontierCells, count, LineCache.code(me), frontierScores);
+			// children that make five are scored as evaluate scores them
+			for (int i = 0; i < count && ownFives != 0; i++) {
+				if ((ownFives & (1L << frontierCells[i])) != 0)
+					frontierScores[i] = lines.evaluateChild(frontierCells[i], LineCache.code(me));
+			}
+		}
+		boolean max = (me == Color.WHITE);
+		Color other = max ? Color.BLACK : Color.WHITE;
+		int best = -1;
+		// quiet children first, then the forcing ones best static score first, so
+		// they are searched with the window the quiet ones have already narrowed
+		int searched = 0;
+		for (int i = 0; i < count; i++) {
+			if (((forcing | fours) & (1L << frontierCells[i])) != 0) {
+				frontierOrder[searched++] = i;
+				continue;
+			}
+			int score = frontierScores[i];
+			if (best < 0 || (max ? score > frontierScores[best] : score < frontierScores[best]))
+				best = i;
+			if (max)
+				alpha = Math.max(alpha, frontierScores[best]);
+			else
+				beta = Math.min(beta, frontierScores[best]);
+			if (beta <= alpha)
+				return new int[] { frontierCells[best] / 8, frontierCells[best] % 8, frontierScores[best] };
+		}
+		for (int j = 0; j < searched; j++) {
+			int next = j;
+			for (int k = j + 1; k < searched; k++) {
+				int score = frontierScores[frontierOrder[k]];
+				if (max ? score > frontierScores[frontierOrder[next]] : score < frontierScores[frontierOrder[next]])
+					next = k;
+			}
+			int i = frontierOrder[next];
+			frontierOrder[next] = frontierOrder[j];
+			int cell = frontierCells[i];
+			// the other side's fours can only lower the static score, so one that
+			// already fails the window keeps it, as quiesce's stand pat would
+			boolean fails = max ? frontierScores[i] <= alpha : frontierScores[i] >= beta;
+			if ((forcing & (1L << cell)) != 0 || !fails) {
+				int[] move = { cell / 8, cell % 8 };
+				makeMove(board, lines, move, me);
+				quiescenceLeft = quiescenceLimit;
+				frontierScores[i] = quiesce(board, lines, other, alpha, beta, 0);
+				unmakeMove(board, lines, move, me);
+			}
+			int score = frontierScores[i];
+			if (best < 0 || (max ? score > frontierScores[best] : score < frontierScores[best]))
+				best = i;
+			if (max)
+				alpha = Math.max(alpha, frontierScores[best]);
+			else
+				beta = Math.min(beta, frontierScores[best]);
+			if (beta <= alpha)
+				break;
+		}
+		return new int[] { frontierCells[best] / 8, frontierCells[best] % 8, frontierScores[best] };
+	}
+
+	/**
+	 * Puts the cells of the moves that are in the mask in frontierCells
+	 *
+	 * @return the number of cells
+	 */
+	int frontierChildren(ArrayList<String> moveList, long mask) {
+		int count = 0;
+		for (String move : moveList) {
+			int[] newMove = getMove(move);
+			int cell = newMove[0] * 8 + newMove[1];
+			if ((mask & (1L << cell)) != 0)
+				frontierCells[count++] = cell;
+		}
+		return count;
+	}
+
+	/**
+	 * Score of the position at a leaf from white's point of view. A position
+	 * holding a five is over and keeps the line cache score, which counts
+	 * WEIGHTS[0] for the five, whatever the evaluator would make of it
+	 */
+	int evaluate(LineCache lines) {
+		return (evaluator == null || lines.fives != 0) ? lines.evaluate(Color.WHITE) : evaluator.evaluate();
+	}
+
+	/**
+	 * Places a stone on the board, line cache and evaluator
+	 */
+	void makeMove(Color[][] board, LineCache lines, int[] move, Color me) {
+		board[move[0]][move[1]] = me;
+		lines.makeMove(move[0], move[1], me);
+		if (evaluator != null)
+			evaluator.makeMove(move[0] * 8 + move[1], LineCache.code(me));
+	}
+
+	/**
+	 * Takes back a stone placed by makeMove
+	 */
+	void unmakeMove(Color[][] board, LineCache lines, int[] move, Color me) {
+		if (evaluator != null)
+			evaluator.unmakeMove(move[0] * 8 + move[1], LineCache.code(me));
+		lines.unmakeMove(move[0], move[1]);
+		board[move[0]][move[1]] = null;
+	}
+
+	/**
+	 * Create a copy of the board
+	 */
+	Color[][] copyBoard(Color[][] board) {
+		Color[][] newBoard = new Color[8][8];
+		for (int i = 0; i < 8; i++) {
+			for (int j = 0; j < 8; j++) {
+				newBoard[i][j] = board[i][j];
+			}
+		}
+		return newBoard;
 	}
 
 	/**
@@ -237,6 +1055,32 @@ class Player extends GomokuPlayer {
 				}
 			}
 		}
+
+		// top half of diags, decreasing direction
+		for (int k = GomokuBoard.COLS - 1; k >= 4; k--) {
+			String currentDiagsDecreasingTop = getDiagsIncreasingTop(board, k);
+			// sliding window through top diag
+			for (int i = 0; i < (currentDiagsDecreasingTop.length() - 4); i++) {
+				int endIndex = i + 5;
+				String possibleString = currentDiagsDecreasingTop.substring(i, endIndex);
+				if (isValid(possibleString, away) && isValid(possibleString, 5 - away, me)) {
+					counter++;
+				}
+			}
+		}
+
+		// bottom half of diags, decreasing direction
+		for (int k = 5; k < GomokuBoard.COLS; k++) {
+			String currentDiagsDecreasingBottom = getDiagsIncreasingBottom(board, k);
+			// sliding window through bottom diag
+			for (int i = 0; i < (currentDiagsDecreasingBottom.length() - 4); i++) {
+				int endIndex = i + 5;
+				String possibleString = currentDiagsDecreasingBottom.substring(i, endIndex);
+				if (isValid(possibleString, away) && isValid(possibleString, 5 - away, me)) {
+					counter++;
+				}
+			}
+		}
 		return counter;
 	}
 
@@ -270,6 +1114,42 @@ class Player extends GomokuPlayer {
 		return diags;
 	}
 
+	// get increasing top diagonal and turn into parsable string
+	String getDiagsIncreasingTop(Color[][] board, int diagPos) {
+		String diags = "";
+		int i = GomokuBoard.COLS - diagPos - 1;
+
+		for (int j = 0; j <= diagPos; j++) {
+			if (board[j][i] == null)
+				diags += "_";
+			else if (board[j][i] == Color.BLACK)
+				diags += "b";
+			else if (board[j][i] == Color.WHITE)
+				diags += "w";
+
+			i++;
+		}
+		return diags;
+	}
+
+	// get increasing bottom diagonal and turn into parsable string
+	String getDiagsIncreasingBottom(Color[][] board, int diagPos) {
+		String diags = "";
+		int i = GomokuBoard.COLS - diagPos;
+
+		for (int j = 0; j < diagPos; j++) {
+			if (board[i][j] == null)
+				diags += "_";
+			else if (board[i][j] == Color.BLACK)
+				diags += "b";
+			else if (board[i][j] == Color.WHITE)
+				diags += "w";
+
+			i++;
+		}
+		return diags;
+	}
+
 	// get row and turn into parsable string
 	String getRow(Color[][] board, int rowPos) {
 		String row = "";
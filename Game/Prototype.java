@@ -14,6 +14,9 @@ import java.util.HashMap;
  **/
 class Prototype extends GomokuPlayer {
 
+	// shared by every Prototype instance and search thread in this JVM
+	static final EvalCache evalCache = new EvalCache(1 << 16);
+
 	public Move chooseMove(Color[][] board, Color me) {
 		// Check if no moves have been played
 		if (noMoves(board)) {
@@ -85,21 +88,39 @@ class Prototype extends GomokuPlayer {
 	}
 
 	/**
-	 * Heuristic evaluation method based off how many spaces the agent is to winning
+	 * Looks the board up in the evaluation cache, scoring it and checking for
+	 * five in a row on a miss
+	 * 
+	 * @return packed cache entry with white's score and the win flags
+	 */
+	long cachedEvaluation(Color[][] board) {
+		long hash = Zobrist.hash(board);
+		long entry = evalCache.probe(hash);
+		if (entry == EvalCache.MISS) {
+			boolean whiteFive = nearWins(board, Color.WHITE, 0, false) != 0;
+			boolean blackFive = nearWins(board, Color.BLACK, 0, false) != 0;
+			entry = evalCache.store(hash, scoreBoard(board, Color.WHITE), whiteFive, blackFive);
+		}
+		return entry;
+	}
+
+	/**
+	 * Heuristic evaluation, served from the evaluation cache where possible
 	 */
 	int evaluate(Color[][] board, Color me) {
-		System.out.println("I am " + (me.equals(Color.BLACK) ? "Black" : "White"));
-		printBoard(board);
+		int score = EvalCache.score(cachedEvaluation(board));
+		return me == Color.WHITE ? score : -score;
+	}
+
+	/**
+	 * Heuristic evaluation method based off how many spaces the agent is to winning
+	 */
+	int scoreBoard(Color[][] board, Color me) {
 		int won = nearWins(board, me, 0, false) * 10000;
 		int oneAway = nearWins(board, me, 1, false) * 100;
 		int twoAway = nearWins(board, me, 2, false) * 50;
 		int threeAway = nearWins(board, me, 3, false) * 1;
 
-		System.out.println(won);
-		System.out.println(oneAway);
-		System.out.println(twoAway);
-		System.out.println(threeAway);
-
 		if (me == Color.WHITE) {
 			won -= (nearWins(board, Color.BLACK, 0, false) * 10000);
 			oneAway -= (nearWins(board, Color.BLACK, 1, false) * 100);
@@ -113,14 +134,8 @@ class Prototype extends GomokuPlayer {
 			threeAway -= (nearWins(board, Color.WHITE, 3, false) * 1);
 		}
 
-		System.out.println(won);
-		System.out.println(oneAway);
-		System.out.println(twoAway);
-		System.out.println(threeAway);
-
 		// weight the scores
 		int totalScore = won * 100000 + oneAway * 100 + twoAway * 5 + threeAway * 1;
-		System.out.println(totalScore);
 		return totalScore;
 	}
 
@@ -208,17 +223,7 @@ class Prototype extends GomokuPlayer {
 	}
 
 	boolean hasGameCompleted(Color[][] board) {
-		int whiteWins = nearWins(board, Color.WHITE, 0, false);
-		int blackWins = nearWins(board, Color.BLACK, 0, false);
-
-		boolean outcome = true;
-		if (whiteWins == 0 && blackWins == 0) {
-			outcome = false;
-		}
-		if (outcome) {
-			// printBoard(board);
-		}
-		return outcome;
+		return EvalCache.hasFive(cachedEvaluation(board));
 	}
 
 	/**
@@ -6,7 +6,7 @@ import java.awt.Color;
  *  otherwise chooseMove() will get stuck in an infinite loop. 
  *	Author: Simon Dixon
  **/
-class RandomPlayer extends GomokuPlayer {
+class RandomPlayer extends GomokuPlayer implements TrustedPlayer {
 
 	public Move chooseMove(Color[][] board, Color me) {
 		while (true) {
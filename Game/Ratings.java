@@ -0,0 +1,300 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Ratings from game results, read one game at a time so files of any size
+ * stream through. Players get ids in the order they are first seen and all
+ * state is kept in arrays indexed by id: an online Elo rating updated after
+ * every game, and the points each player scored against each other one,
+ * which is all a Bradley-Terry fit needs however many games there are.
+ *
+ * refit() finds the maximum likelihood Bradley-Terry strengths with the
+ * minorization-maximization update, every player's update computed in
+ * parallel. Each player gets one virtual drawn game against every opponent
+ * it has met, so a player who never won still gets a finite rating. Both
+ * ratings are on the Elo scale, with the Bradley-Terry ones averaging zero,
+ * and come with 95% intervals from the Fisher information of each rating.
+ *
+ * Reads the output of HeadlessReferee batches (the "White: A vs Black: B"
+ * line and a "... WINS" line per game), TournamentCoordinator checkpoints
+ * (RESULT lines) and record files; "-" reads standard input.
+ *
+ * Usage: java Ratings file... [k factor] [every n]
+ **/
+class Ratings {
+
+	static final double ELO = 400 / Math.log(10);
+	static final double Z95 = 1.96;
+	// statuses of the move that ends a game, as FastBoard and HeadlessReferee give them
+	static final Set<String> ENDINGS = new HashSet<String>(Arrays.asList("White wins", "Black wins", "Game drawn",
+			"Time limit exceeded", "Exception or null Move", "Move out of range", "Move in occupied cell",
+			"White wins by adjudication", "Black wins by adjudication", "Game drawn by adjudication"));
+
+	double kFactor = 16;
+	// print the online ratings every so many games, 0 for never
+	long every;
+
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+	private final List<String> names = new ArrayList<String>();
+	private int capacity = 8;
+	private double[] elo = new double[capacity];
+	private long[] played = new long[capacity];
+	// points[i * capacity + j] is what i scored against j, a draw is half a point
+	private double[] points = new double[capacity * capacity];
+	long games;
+
+	int size() {
+		return names.size();
+	}
+
+	String name(int id) {
+		return names.get(id);
+	}
+
+	int id(String name) {
+		Integer id = ids.get(name);
+		if (id != null)
+			return id;
+		if (names.size() == capacity)
+			grow();
+		ids.put(name, names.size());
+		names.add(name);
+		return names.size() - 1;
+	}
+
+	private void grow() {
+		int bigger = capacity * 2;
+		double[] table = new double[bigger * bigger];
+		for (int i = 0; i < capacity; i++)
+			System.arraycopy(points, i * capacity, table, i * bigger, capacity);
+		points = table;
+		elo = Arrays.copyOf(elo, bigger);
+		played = Arrays.copyOf(played, bigger);
+		capacity = bigger;
+	}
+
+	/**
+	 * Adds one game
+	 *
+	 * @param score white's points, 1 for a win and a half for a draw
+	 */
+	void add(int white, int black, double score) {
+		double expected = 1 / (1 + Math.pow(10, (elo[black] - elo[white]) / 400));
+		elo[white] += kFactor * (score - expected);
+		elo[black] -= kFactor * (score - expected);
+		points[white * capacity + black] += score;
+		points[black * capacity + white] += 1 - score;
+		played[white]++;
+		played[black]++;
+		games++;
+		if (every > 0 && games % every == 0) {
+			System.out.println(games + " games");
+			report(null);
+		}
+	}
+
+	/**
+	 * @param winner "White", "Black" or anything else for a draw
+	 */
+	void add(String white, String black, String winner) {
+		add(id(white), id(black), winner.equals("White") ? 1 : winner.equals("Black") ? 0 : 0.5);
+	}
+
+	double onlineElo(int id) {
+		return elo[id];
+	}
+
+	long played(int id) {
+		return played[id];
+	}
+
+	double score(int id) {
+		double sum = 0;
+		for (int j = 0; j < size(); j++)
+			sum += points[id * capacity + j];
+		return sum;
+	}
+
+	/**
+	 * Maximum likelihood Bradley-Terry fit
+	 *
+	 * @return ratings on the Elo scale by id, averaging zero
+	 */
+	double[] refit() {
+		int n = size();
+		double[] strength = new double[n];
+		double[] next = new double[n];
+		Arrays.fill(strength, 1);
+		for (int iteration = 0; iteration < 10000; iteration++) {
+			double[] p = strength, out = next;
+			IntStream.range(0, n).parallel().forEach(i -> {
+				double wins = 0, sum = 0;
+				for (int j = 0; j < n; j++) {
+					double games = points[i * capacity + j] + points[j * capacity + i];
+					if (j == i || games == 0)
+						continue;
+					// plus the virtual draw
+					wins += points[i * capacity + j] + 0.5;
+					sum += (games + 1) / (p[i] + p[j]);
+				}
+				out[i] = (sum == 0) ? p[i] : wins / sum;
+			});
+			// keep the geometric mean at one, and stop once nothing moves
+			double logMean = 0;
+			for (int i = 0; i < n; i++)
+				logMean += Math.log(next[i]) / n;
+			double change = 0;
+			for (int i = 0; i < n; i++) {
+				next[i] /= Math.exp(logMean);
+				change = Math.max(change, Math.abs(Math.log(next[i] / strength[i])));
+			}
+			double[] swap = strength;
+			strength = next;
+			next = swap;
+			if (change < 1e-9)
+				break;
+		}
+		double[] ratings = new double[n];
+		for (int i = 0; i < n; i++)
+			ratings[i] = ELO * Math.log(strength[i]);
+		return ratings;
+	}
+
+	/**
+	 * Half widths of 95% intervals, from each rating's Fisher information with
+	 * the others held fixed
+	 */
+	double[] errors(double[] ratings) {
+		int n = size();
+		double[] errors = new double[n];
+		IntStream.range(0, n).parallel().forEach(i -> {
+			double information = 0;
+			for (int j = 0; j < n; j++) {
+				double games = points[i * capacity + j] + points[j * capacity + i];
+				if (j == i || games == 0)
+					continue;
+				double p = 1 / (1 + Math.exp((ratings[j] - ratings[i]) / ELO));
+				information += games * p * (1 - p);
+			}
+			errors[i] = (information == 0) ? Double.POSITIVE_INFINITY : Z95 * ELO / Math.sqrt(information);
+		});
+		return errors;
+	}
+
+	double[] onlineRatings() {
+		return Arrays.copyOf(elo, size());
+	}
+
+	/**
+	 * Reads a record file, or results in any of the text formats
+	 */
+	void read(String file) throws IOException {
+		if (!file.equals("-") && isRecordFile(Paths.get(file))) {
+			GameRecordReader reader = new GameRecordReader(Paths.get(file));
+			for (long game = reader.first(); game < reader.end(); game = reader.next(game)) {
+				int winner = reader.winner(game);
+				add(id(reader.whiteName(game)), id(reader.blackName(game)),
+						winner == LineCache.WHITE ? 1 : winner == LineCache.BLACK ? 0 : 0.5);
+			}
+			return;
+		}
+		InputStream in = file.equals("-") ? System.in : Files.newInputStream(Paths.get(file));
+		try (BufferedReader lines = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			read(lines);
+		}
+	}
+
+	static boolean isRecordFile(Path path) throws IOException {
+		byte[] header = new byte[GameRecord.HEADER.length];
+		try (InputStream in = Files.newInputStream(path)) {
+			return in.read(header) == header.length && Arrays.equals(header, GameRecord.HEADER);
+		}
+	}
+
+	/**
+	 * A logged HeadlessReferee game ends with the status of its last move and
+	 * a WINS line, followed by the batch's own WINS line for the same game, so
+	 * a WINS line straight after a game ending status is skipped
+	 */
+	void read(BufferedReader lines) throws IOException {
+		String white = null, black = null, previous = "";
+		for (String line = lines.readLine(); line != null; previous = line, line = lines.readLine()) {
+			line = line.trim();
+			String[] fields = line.split("\\s+");
+			if (line.startsWith("White: ") && fields.length == 5 && fields[2].equals("vs")) {
+				// White: A vs Black: B
+				white = fields[1];
+				black = fields[4];
+			} else if (fields.length == 2 && fields[1].equals("WINS")) {
+				if (white != null && !ENDINGS.contains(previous))
+					add(white, black, fields[0]);
+			} else if (fields.length >= 5 && fields[0].equals("RESULT")) {
+				// RESULT white black k winner ...
+				add(fields[1], fields[2], fields[4]);
+			}
+		}
+	}
+
+	/**
+	 * Prints the players best first, with the Bradley-Terry fit if given
+	 */
+	void report(double[] fitted) {
+		int n = size();
+		double[] online = onlineRatings();
+		double[] key = (fitted != null) ? fitted : online;
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++)
+			order[i] = i;
+		Arrays.sort(order, (a, b) -> Double.compare(key[b], key[a]));
+		double[] onlineErrors = errors(online);
+		double[] fittedErrors = (fitted != null) ? errors(fitted) : null;
+		System.out.printf("%-24s %8s %7s %14s", "player", "games", "score", "online Elo");
+		System.out.println(fitted != null ? String.format(" %16s", "Bradley-Terry") : "");
+		for (int i : order) {
+			System.out.printf("%-24s %8d %6.1f%% %7.0f +-%4.0f", name(i), played[i], 100 * score(i) / played[i],
+					online[i], onlineErrors[i]);
+			System.out.println(fitted != null ? String.format(" %9.0f +-%4.0f", fitted[i], fittedErrors[i]) : "");
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		Ratings ratings = new Ratings();
+		List<String> files = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("k"))
+				ratings.kFactor = Double.parseDouble(args[++i]);
+			else if (args[i].equals("every"))
+				ratings.every = Long.parseLong(args[++i]);
+			else
+				files.add(args[i]);
+		}
+		if (files.isEmpty()) {
+			System.out.println("Usage: java Ratings file... [k factor] [every n]");
+			return;
+		}
+		long start = System.nanoTime();
+		for (String file : files)
+			ratings.read(file);
+		long read = System.nanoTime();
+		double[] fitted = ratings.refit();
+		long fit = System.nanoTime();
+		ratings.report(fitted);
+		System.out.printf("%d games read in %.2fs, fitted in %.3fs%n", ratings.games, (read - start) / 1e9,
+				(fit - read) / 1e9);
+	}
+
+} // end Ratings class
@@ -0,0 +1,56 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder events for the headless referee, one per game and one per
+ * move made on the board, recorded whenever a recording is running. The
+ * duration of a move event is the wall time from asking the player to the
+ * move being on the board.
+ **/
+class RefereeEvents {
+
+	@Name("gomoku.Game")
+	@Label("Game")
+	@Category({ "Gomoku", "Referee" })
+	@StackTrace(false)
+	static class Game extends Event {
+		@Label("White")
+		String white;
+		@Label("Black")
+		String black;
+		@Label("Winner")
+		String winner;
+		@Label("Status")
+		String status;
+		@Label("Moves")
+		int moves;
+	}
+
+	@Name("gomoku.MakeMove")
+	@Label("Make Move")
+	@Category({ "Gomoku", "Referee" })
+	@StackTrace(false)
+	static class MakeMove extends Event {
+		@Label("Colour")
+		String colour;
+		@Label("Move")
+		String move;
+		@Label("CPU Time")
+		@Description("CPU time of the thread that ran chooseMove")
+		@Timespan(Timespan.NANOSECONDS)
+		long cpuTime;
+		@Label("Cut Off")
+		@Description("An anytime player was stopped at the deadline and its published move played")
+		boolean cutoff;
+		@Label("Over Time")
+		boolean overrun;
+		@Label("Status")
+		String status;
+	}
+
+} // end RefereeEvents class
@@ -0,0 +1,75 @@
+import java.awt.Color;
+
+/**
+ * Times Player's root splitting search against the serial search on a fixed
+ * set of positions, for 1, 2, 4 ... threads up to the number of cores, and
+ * counts the positions where each thread count chooses the same move with
+ * the same score. Late move reductions and futility pruning depend on the
+ * search window, which differs between the threads, so they are switched
+ * off with exact to check the split search matches the serial one.
+ * 
+ * Usage: java RootSplitBenchmark [positions n] [threads max] [exact]
+ **/
+class RootSplitBenchmark {
+
+	public static void main(String[] args) {
+		int count = 20;
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("positions"))
+				count = Integer.parseInt(args[++i]);
+			else if (args[i].equals("threads"))
+				maxThreads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("exact"))
+				exact = true;
+		}
+		Color[][][] boards = EvalBenchmark.positions(count, 7);
+		String[] serial = null;
+		double serialSeconds = 0;
+		// one untimed serial pass to warm up the JIT
+		run(boards, 1);
+		for (int threads = 1;; threads = Math.min(threads * 2, maxThreads)) {
+			long start = System.nanoTime();
+			String[] moves = run(boards, threads);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			if (serial == null) {
+				serial = moves;
+				serialSeconds = seconds;
+			}
+			int same = 0;
+			for (int i = 0; i < count; i++) {
+				if (serial[i].equals(moves[i]))
+					same++;
+			}
+			System.out.printf("%2d threads %8.2fs %10d nodes  speedup %.2f  same move and score %d/%d%n", threads,
+					seconds, nodes, serialSeconds / seconds, same, count);
+			if (threads >= maxThreads)
+				break;
+		}
+	}
+
+	static long nodes;
+	static boolean exact;
+
+	/**
+	 * @return the move and score chosen for every position
+	 */
+	static String[] run(Color[][][] boards, int threads) {
+		Player player = new Player();
+		player.verbose = false;
+		player.threads = threads;
+		if (exact) {
+			player.reductions = false;
+			player.futility = false;
+		}
+		String[] moves = new String[boards.length];
+		nodes = 0;
+		for (int i = 0; i < boards.length; i++) {
+			Move move = player.chooseMove(boards[i], (i % 2 == 0) ? Color.WHITE : Color.BLACK);
+			moves[i] = move + " " + player.lastScore;
+			nodes += player.nodes;
+		}
+		return moves;
+	}
+
+} // end RootSplitBenchmark class
@@ -0,0 +1,131 @@
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares search settings by nodes and time over the same random positions,
+ * and optionally by playing each setting against the first one from random
+ * openings, both colours. A setting is a comma separated list of Player
+ * fields, for example "depth=4,quiescence=off".
+ *
+ * Usage: java SearchBenchmark [positions n] [games n] setting...
+ **/
+class SearchBenchmark {
+
+	static final String[] DEFAULT_SETTINGS = { "depth=4,quiescence=off", "depth=4", "depth=5,quiescence=off" };
+
+	static Player player(String setting) {
+		Player player = new Player();
+		player.verbose = false;
+		for (String field : setting.split(",")) {
+			String[] pair = field.split("=");
+			String value = pair[1];
+			boolean on = value.equals("on");
+			switch (pair[0]) {
+			case "depth":
+				player.depth = Integer.parseInt(value);
+				break;
+			case "quiescence":
+				player.quiescence = on;
+				break;
+			case "fours":
+				player.quiescenceFours = on;
+				break;
+			case "limit":
+				player.quiescenceLimit = Integer.parseInt(value);
+				break;
+			case "ordering":
+				player.ordering = on;
+				break;
+			case "reductions":
+				player.reductions = on;
+				break;
+			case "futility":
+				player.futility = on;
+				break;
+			case "candidates":
+				player.candidates = Integer.parseInt(value);
+				break;
+			case "late":
+				player.lateMoves = Integer.parseInt(value);
+				break;
+			case "margin":
+				player.futilityMargin = Integer.parseInt(value);
+				break;
+			case "table":
+				player.table = on ? new TranspositionTable(1 << 18) : null;
+				break;
+			default:
+				throw new IllegalArgumentException("unknown setting " + pair[0]);
+			}
+		}
+		return player;
+	}
+
+	/**
+	 * @return the first player's points, a win is 1 and a draw a half
+	 */
+	static double match(Player first, Player second, int games) {
+		double points = 0;
+		for (int game = 0; game < games; game++) {
+			FastBoard board = new FastBoard();
+			// each opening is played twice, once with each colour
+			Random random = new Random(game / 2);
+			int stones = 2 + random.nextInt(6);
+			for (int i = 0; i < stones; i++) {
+				int row, col;
+				do {
+					row = 1 + random.nextInt(6);
+					col = 1 + random.nextInt(6);
+				} while (board.getBoardView()[row][col] != null);
+				board.makeMove(new Move(row, col), board.getTurn());
+			}
+			Color firstColour = (game % 2 == 0) ? Color.white : Color.black;
+			while (board.getWinner() == null) {
+				Color turn = board.getTurn();
+				Player player = (turn == firstColour) ? first : second;
+				board.makeMove(player.chooseMove(board.getPublicBoard(), turn), turn);
+			}
+			if (board.getWinner() == firstColour)
+				points += 1;
+			else if (board.getWinner() == Color.blue)
+				points += 0.5;
+		}
+		return points;
+	}
+
+	public static void main(String[] args) {
+		int count = 40, games = 0;
+		List<String> settings = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("positions"))
+				count = Integer.parseInt(args[++i]);
+			else if (args[i].equals("games"))
+				games = Integer.parseInt(args[++i]);
+			else
+				settings.add(args[i]);
+		}
+		if (settings.isEmpty())
+			settings.addAll(Arrays.asList(DEFAULT_SETTINGS));
+		Color[][][] boards = EvalBenchmark.positions(count, 11);
+		for (String setting : settings) {
+			Player player = player(setting);
+			long nodes = 0, extra = 0, start = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				player.chooseMove(boards[i], (i % 2 == 0) ? Color.WHITE : Color.BLACK);
+				nodes += player.nodes;
+				extra += player.quiescenceNodes;
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.printf("%-32s %10d nodes (%d quiescence) %7.2fs", setting, nodes, extra, seconds);
+			if (games > 0 && !setting.equals(settings.get(0))) {
+				System.out.printf("  %.1f/%d against %s", match(player, player(settings.get(0)), games), games,
+						settings.get(0));
+			}
+			System.out.println();
+		}
+	}
+
+} // end SearchBenchmark class
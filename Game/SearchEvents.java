@@ -0,0 +1,78 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder events for the search. A chooseMove call and each depth
+ * of an iterative deepening search are recorded by default, node samples
+ * only when turned on, for example
+ *
+ *   java -XX:StartFlightRecording=filename=run.jfr,+gomoku.NodeSample#enabled=true ...
+ *
+ * Without a recording shouldCommit is false and an event costs next to
+ * nothing, so the events are always compiled in.
+ **/
+class SearchEvents {
+
+	@Name("gomoku.ChooseMove")
+	@Label("Choose Move")
+	@Category({ "Gomoku", "Search" })
+	@StackTrace(false)
+	static class ChooseMove extends Event {
+		@Label("Player")
+		String player;
+		@Label("Colour")
+		String colour;
+		@Label("Depth")
+		@Description("Depth of the search the move came from")
+		int depth;
+		@Label("Nodes")
+		long nodes;
+		@Label("Score")
+		@Description("From white's point of view")
+		int score;
+		@Label("Move")
+		String move;
+		@Label("Stopped")
+		@Description("The search was stopped before it finished")
+		boolean stopped;
+	}
+
+	@Name("gomoku.Iteration")
+	@Label("Search Iteration")
+	@Category({ "Gomoku", "Search" })
+	@StackTrace(false)
+	static class Iteration extends Event {
+		@Label("Depth")
+		int depth;
+		@Label("Nodes")
+		@Description("Nodes of the search so far, all depths")
+		long nodes;
+		@Label("Score")
+		int score;
+		@Label("Move")
+		String move;
+	}
+
+	@Name("gomoku.NodeSample")
+	@Label("Node Sample")
+	@Description("One minimax node in every 1024")
+	@Category({ "Gomoku", "Search" })
+	@Enabled(false)
+	@StackTrace(false)
+	static class NodeSample extends Event {
+		@Label("Depth Left")
+		int depth;
+		@Label("Alpha")
+		int alpha;
+		@Label("Beta")
+		int beta;
+		@Label("Nodes")
+		long nodes;
+	}
+
+} // end SearchEvents class
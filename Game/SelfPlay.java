@@ -0,0 +1,256 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates labelled positions by letting a player play itself. Worker
+ * threads each play games from a random opening and hand the finished
+ * GameRecord to a bounded queue, so they block rather than pile up games
+ * when the writer falls behind. The single writer thread drops the label of
+ * any position already seen, by canonical hash, and appends the games to a
+ * record file. Each labelled move is a (position, search score, result)
+ * tuple: the position before the move, the player's score for it and the
+ * game's result. If writing fails the workers are stopped and the error is
+ * thrown from run.
+ *
+ * Usage: java SelfPlay PlayerClass file [games n] [threads t] [opening k] [queue q] [seed s]
+ **/
+class SelfPlay {
+
+	String playerName;
+	int games = 1000;
+	int threads = Runtime.getRuntime().availableProcessors();
+	int opening = 4;
+	int queueSize = 256;
+	long seed = System.nanoTime();
+
+	// cells of the centre square openings are drawn from, and the openings
+	// drawn before a repeat is accepted
+	static final int CENTRE = 16;
+	static final int ATTEMPTS = 256;
+
+	// marks the end of the queue
+	private static final GameRecord DONE = new GameRecord();
+
+	private BlockingQueue<GameRecord> queue;
+	private final AtomicInteger started = new AtomicInteger();
+	private final Set<Long> openings = ConcurrentHashMap.newKeySet();
+	private final LongSet seen = new LongSet();
+	long positions;
+	long labelled;
+
+	SelfPlay(String playerName) {
+		this.playerName = playerName;
+	}
+
+	GomokuPlayer newPlayer() throws ReflectiveOperationException {
+		GomokuPlayer player = HeadlessReferee.load(playerName);
+		if (player instanceof Player)
+			((Player) player).verbose = false;
+		return player;
+	}
+
+	/**
+	 * Plays games until the total is reached, each worker has its own players
+	 * and board
+	 */
+	void work(int worker) {
+		try {
+			GomokuPlayer white = newPlayer();
+			GomokuPlayer black = newPlayer();
+			FastBoard board = new FastBoard();
+			Random random = new Random(seed + worker);
+			while (started.getAndIncrement() < games) {
+				queue.put(playGame(white, black, board, random));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ReflectiveOperationException e) {
+			System.err.println("Cannot create " + playerName + ": " + e);
+		}
+	}
+
+	GameRecord playGame(GomokuPlayer whitePlayer, GomokuPlayer blackPlayer, FastBoard board, Random random) {
+		GameRecord record = new GameRecord();
+		record.reset(playerName, playerName, GameRecord.HAS_SCORES);
+		playOpening(board, record, random);
+		String status = "";
+		while (board.getWinner() == null) {
+			Color turn = board.getTurn();
+			GomokuPlayer player = (turn == Color.white) ? whitePlayer : blackPlayer;
+			Move move;
+			try {
+				move = player.chooseMove(board.getPublicBoard(), turn);
+			} catch (Exception e) {
+				move = null;
+			}
+			status = board.makeMove(move, turn);
+			if (board.getMoveCount() > record.count) {
+				int score = (player instanceof Player) ? ((Player) player).lastScore : GameRecord.NO_SCORE;
+				record.addMove(move.row, move.col, 0, score);
+			}
+		}
+		record.setResult(board.getWinner(), HeadlessReferee.reason(status));
+		return record;
+	}
+
+	/**
+	 * Plays random stones in the centre of the board, redrawing openings that
+	 * another game has already used, up to ATTEMPTS times
+	 */
+	void playOpening(FastBoard board, GameRecord record, Random random) {
+		for (int attempt = 0;; attempt++) {
+			board.init();
+			record.count = 0;
+			// lengthen the opening when short ones keep repeating, up to a full centre
+			int length = Math.min(CENTRE, opening + attempt / 16);
+			for (int i = 0; i < length; i++) {
+				int row, col;
+				do {
+					row = 2 + random.nextInt(4);
+					col = 2 + random.nextInt(4);
+				} while (board.getBoardView()[row][col] != null);
+				board.makeMove(new Move(row, col), board.getTurn());
+				record.addMove(row, col, 0, GameRecord.NO_SCORE);
+			}
+			if (openings.add(Zobrist.canonical(board.white, board.black)) || attempt >= ATTEMPTS)
+				return;
+		}
+	}
+
+	/**
+	 * Replays a game, removing the labels of positions written before
+	 */
+	void deduplicate(GameRecord record) {
+		long white = 0, black = 0;
+		for (int ply = 0; ply < record.count; ply++) {
+			if (record.scores[ply] != GameRecord.NO_SCORE) {
+				positions++;
+				if (seen.add(Zobrist.canonical(white, black)))
+					labelled++;
+				else
+					record.scores[ply] = GameRecord.NO_SCORE;
+			}
+			if (ply % 2 == 0)
+				white |= 1L << record.cells[ply];
+			else
+				black |= 1L << record.cells[ply];
+		}
+	}
+
+	void run(GameRecordWriter writer) throws IOException, InterruptedException {
+		queue = new ArrayBlockingQueue<GameRecord>(queueSize);
+		// daemon threads, so workers left blocked on the queue cannot keep the JVM alive
+		ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "Self-play");
+			thread.setDaemon(true);
+			return thread;
+		});
+		for (int i = 0; i < threads; i++) {
+			final int worker = i;
+			pool.execute(() -> work(worker));
+		}
+		pool.shutdown();
+		// tell the writer once every worker has finished
+		Thread closer = new Thread(() -> {
+			try {
+				pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+				queue.put(DONE);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		closer.setDaemon(true);
+		closer.start();
+		try {
+			for (GameRecord record = queue.take(); record != DONE; record = queue.take()) {
+				deduplicate(record);
+				writer.append(record);
+			}
+		} catch (IOException | RuntimeException e) {
+			// nobody takes from the queue any more, so stop the workers blocked on it
+			pool.shutdownNow();
+			closer.interrupt();
+			throw e;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.out.println("Usage: java SelfPlay PlayerClass file [games n] [threads t] [opening k] [queue q] [seed s]");
+			return;
+		}
+		SelfPlay selfPlay = new SelfPlay(args[0]);
+		for (int i = 2; i < args.length; i++) {
+			if (args[i].equals("games"))
+				selfPlay.games = Integer.parseInt(args[++i]);
+			else if (args[i].equals("threads"))
+				selfPlay.threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("opening"))
+				selfPlay.opening = Integer.parseInt(args[++i]);
+			else if (args[i].equals("queue"))
+				selfPlay.queueSize = Integer.parseInt(args[++i]);
+			else if (args[i].equals("seed"))
+				selfPlay.seed = Long.parseLong(args[++i]);
+		}
+		if (selfPlay.opening < 0 || selfPlay.opening > CENTRE) {
+			System.out.println("opening must be 0 to " + CENTRE + " stones, the cells of the centre square");
+			return;
+		}
+		long start = System.nanoTime();
+		try (GameRecordWriter writer = new GameRecordWriter(Paths.get(args[1]))) {
+			selfPlay.run(writer);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d games, %d positions, %d unique labelled in %.1fs (%.0f positions/hour)%n",
+				selfPlay.games, selfPlay.positions, selfPlay.labelled, seconds, selfPlay.labelled / seconds * 3600);
+	}
+
+	/**
+	 * Open addressing set of longs, only used by the writer thread
+	 */
+	static class LongSet {
+		private long[] keys = new long[1 << 16];
+		private boolean hasZero;
+		private int size;
+
+		boolean add(long key) {
+			if (key == 0) {
+				boolean added = !hasZero;
+				hasZero = true;
+				return added;
+			}
+			int mask = keys.length - 1;
+			int i = (int) Zobrist.mix(key) & mask;
+			while (keys[i] != 0) {
+				if (keys[i] == key)
+					return false;
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			if (++size * 2 > keys.length)
+				grow();
+			return true;
+		}
+
+		private void grow() {
+			long[] old = keys;
+			keys = new long[old.length * 2];
+			size = 0;
+			for (long key : old) {
+				if (key != 0)
+					add(key);
+			}
+		}
+	}
+
+} // end SelfPlay class
@@ -4,7 +4,7 @@ import java.awt.Color;
  *  left and moving across and then down to search the board.
  *  Author: Simon Dixon
  **/
-class SequencePlayer extends GomokuPlayer {
+class SequencePlayer extends GomokuPlayer implements TrustedPlayer {
 
 	public Move chooseMove(Color[][] board, Color me) {
 		for (int row = 0; row < GomokuBoard.ROWS; row++)
@@ -0,0 +1,139 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Prepares fast startup for headless runs and reports the time to the first
+ * move. It writes the tables file, packs the classes into a jar (AppCDS only
+ * archives classes loaded from jars), creates an AppCDS archive of the
+ * classes loaded by one HeadlessReferee game (which never loads the AWT
+ * referee), then starts fresh JVMs with and without each and prints the
+ * median JVM uptime at which the first move was made.
+ *
+ * Use the results with:
+ *   java -XX:SharedArchiveFile=gomoku.jsa -Dtables=tables.bin -cp gomoku.jar HeadlessReferee ...
+ *
+ * Usage: java Startup [player Player] [jar gomoku.jar] [archive gomoku.jsa] [tables tables.bin] [runs n]
+ **/
+class Startup {
+
+	String player = "Player";
+	Path jar = Paths.get("gomoku.jar");
+	Path archive = Paths.get("gomoku.jsa");
+	Path tables = Paths.get("tables.bin");
+	int runs = 5;
+
+	/**
+	 * Plays one game in a new JVM with the given options
+	 *
+	 * @return the JVM uptime in ms at the first move, or -1 if it was not reported
+	 */
+	long firstMove(String... options) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<String>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(Arrays.asList(options));
+		command.addAll(Arrays.asList("-cp", jar.toString(), "HeadlessReferee", player,
+				"RandomPlayer", "games", "1"));
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		long first = -1;
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+			for (String line = in.readLine(); line != null; line = in.readLine()) {
+				if (line.startsWith("first move after "))
+					first = Long.parseLong(line.split(" ")[3]);
+			}
+		}
+		process.waitFor();
+		return first;
+	}
+
+	/**
+	 * @return the median time to first move over the runs
+	 */
+	long median(String... options) throws IOException, InterruptedException {
+		long[] times = new long[runs];
+		for (int i = 0; i < runs; i++)
+			times[i] = firstMove(options);
+		Arrays.sort(times);
+		return times[runs / 2];
+	}
+
+	/**
+	 * Packs every class file found in the class path directories into the jar
+	 */
+	void writeJar() throws IOException {
+		try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+			Set<String> names = new HashSet<String>();
+			for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+				Path root = Paths.get(entry);
+				if (!Files.isDirectory(root))
+					continue;
+				List<Path> classes;
+				try (Stream<Path> files = Files.walk(root)) {
+					classes = files.filter(path -> path.toString().endsWith(".class")).collect(Collectors.toList());
+				}
+				for (Path path : classes) {
+					String name = root.relativize(path).toString().replace(File.separatorChar, '/');
+					// earlier class path entries win, as they do for the class loader
+					if (names.add(name)) {
+						out.putNextEntry(new JarEntry(name));
+						out.write(Files.readAllBytes(path));
+						out.closeEntry();
+					}
+				}
+			}
+		}
+	}
+
+	void run() throws IOException, InterruptedException {
+		TableFile.write(tables);
+		System.out.println("wrote " + tables + " (" + Files.size(tables) + " bytes)");
+		writeJar();
+		System.out.println("wrote " + jar + " (" + Files.size(jar) + " bytes)");
+		Files.deleteIfExists(archive);
+		firstMove("-XX:ArchiveClassesAtExit=" + archive, "-Dtables=" + tables);
+		if (Files.exists(archive))
+			System.out.println("wrote " + archive + " (" + Files.size(archive) + " bytes)");
+		else
+			System.out.println("could not create " + archive + ", this JVM may not support AppCDS");
+		String withTables = "-Dtables=" + tables;
+		String withArchive = "-XX:SharedArchiveFile=" + archive;
+		System.out.println("median time to first move over " + runs + " runs:");
+		System.out.printf("  plain              %5d ms%n", median());
+		System.out.printf("  tables             %5d ms%n", median(withTables));
+		if (Files.exists(archive)) {
+			System.out.printf("  archive            %5d ms%n", median(withArchive));
+			System.out.printf("  archive and tables %5d ms%n", median(withArchive, withTables));
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Startup startup = new Startup();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("player"))
+				startup.player = args[++i];
+			else if (args[i].equals("jar"))
+				startup.jar = Paths.get(args[++i]);
+			else if (args[i].equals("archive"))
+				startup.archive = Paths.get(args[++i]);
+			else if (args[i].equals("tables"))
+				startup.tables = Paths.get(args[++i]);
+			else if (args[i].equals("runs"))
+				startup.runs = Integer.parseInt(args[++i]);
+		}
+		startup.run();
+	}
+
+} // end Startup class
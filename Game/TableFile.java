@@ -0,0 +1,164 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The precomputed lookup tables saved to one memory-mapped file, so a fresh
+ * JVM copies them in instead of computing them. Each class with a table asks
+ * for its section while it initialises and only builds the table itself when
+ * the file or the section is missing. The line scores depend on the
+ * evaluation weights, so the file keeps the weights they were built with
+ * and LineCache ignores them if its own weights differ.
+ *
+ * Mapping the file is opt in with -Dtables=file: on its own it starts no
+ * faster than building the tables, and only about breaks even next to an
+ * AppCDS archive (see Startup).
+ *
+ * The file is big endian: the magic "GTB1", the number of sections, an
+ * offset and element count for each, then the sections, 8 byte aligned.
+ *
+ * Usage: java TableFile [file]   (default tables.bin)
+ **/
+class TableFile {
+
+	static final int MAGIC = ('G' << 24) | ('T' << 16) | ('B' << 8) | '1';
+
+	// sections
+	static final int WEIGHTS = 0;
+	static final int LINE_SCORE = 1;
+	static final int LINE_FIVES = 2;
+	static final int ZOBRIST = 3;
+	static final int SYMMETRY = 4;
+	static final int WINDOWS = 5;
+	static final int SECTIONS = 6;
+
+	// the file to map, null unless given with -Dtables
+	static final String FILE = System.getProperty("tables");
+
+	// the mapped file, or null when there is no usable one
+	private static final ByteBuffer TABLES = (FILE != null) ? map(Paths.get(FILE)) : null;
+
+	private static ByteBuffer map(Path path) {
+		if (!Files.isReadable(path))
+			return null;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.limit() < 8 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != SECTIONS)
+				return null;
+			return buffer;
+		} catch (IOException e) {
+			System.err.println("Ignoring tables file " + path + ": " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Fills the rows, in order, with the ints of a section
+	 *
+	 * @return false if the section is missing or has a different size
+	 */
+	static boolean read(int section, int[]... rows) {
+		ByteBuffer buffer = find(section, rows.length * rows[0].length);
+		if (buffer == null)
+			return false;
+		for (int[] row : rows) {
+			buffer.asIntBuffer().get(row);
+			buffer.position(buffer.position() + row.length * 4);
+		}
+		return true;
+	}
+
+	static boolean read(int section, long[]... rows) {
+		ByteBuffer buffer = find(section, rows.length * rows[0].length);
+		if (buffer == null)
+			return false;
+		for (long[] row : rows) {
+			buffer.asLongBuffer().get(row);
+			buffer.position(buffer.position() + row.length * 8);
+		}
+		return true;
+	}
+
+	/**
+	 * @return a buffer positioned at the section, null unless it holds count elements
+	 */
+	private static ByteBuffer find(int section, int count) {
+		if (TABLES == null)
+			return null;
+		int entry = 8 + section * 8;
+		if (TABLES.getInt(entry + 4) != count)
+			return null;
+		return TABLES.duplicate().position(TABLES.getInt(entry));
+	}
+
+	/**
+	 * Weights the line scores in the file were built with, null if there are none
+	 */
+	static int[] weights() {
+		int[] weights = new int[LineCache.DEFAULT_WEIGHTS.length];
+		return read(WEIGHTS, weights) ? weights : null;
+	}
+
+	/**
+	 * Rebuilds every table and writes them all out
+	 */
+	static void write(Path path) throws IOException {
+		LineCache.buildTables();
+		Zobrist.buildKeys();
+		Zobrist.buildSymmetry();
+		WindowEvaluator.buildWindows();
+		int[][][] ints = new int[SECTIONS][][];
+		long[][][] longs = new long[SECTIONS][][];
+		ints[WEIGHTS] = new int[][] { LineCache.WEIGHTS };
+		ints[LINE_SCORE] = new int[][] { LineCache.LINE_SCORE };
+		ints[LINE_FIVES] = new int[][] { LineCache.LINE_FIVES };
+		longs[ZOBRIST] = Zobrist.KEYS;
+		ints[SYMMETRY] = Zobrist.SYMMETRY;
+		longs[WINDOWS] = new long[][] { WindowEvaluator.WINDOWS };
+		int size = 8 + SECTIONS * 8;
+		int[] offsets = new int[SECTIONS];
+		int[] counts = new int[SECTIONS];
+		for (int s = 0; s < SECTIONS; s++) {
+			offsets[s] = size;
+			if (ints[s] != null) {
+				counts[s] = ints[s].length * ints[s][0].length;
+				size += (counts[s] * 4 + 7) & ~7;
+			} else {
+				counts[s] = longs[s].length * longs[s][0].length;
+				size += counts[s] * 8;
+			}
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(MAGIC).putInt(SECTIONS);
+		for (int s = 0; s < SECTIONS; s++)
+			buffer.putInt(offsets[s]).putInt(counts[s]);
+		for (int s = 0; s < SECTIONS; s++) {
+			buffer.position(offsets[s]);
+			if (ints[s] != null) {
+				for (int[] row : ints[s]) {
+					buffer.asIntBuffer().put(row);
+					buffer.position(buffer.position() + row.length * 4);
+				}
+			} else {
+				for (long[] row : longs[s]) {
+					buffer.asLongBuffer().put(row);
+					buffer.position(buffer.position() + row.length * 8);
+				}
+			}
+		}
+		Files.write(path, buffer.array());
+	}
+
+	public static void main(String[] args) throws IOException {
+		Path path = Paths.get(args.length > 0 ? args[0] : "tables.bin");
+		write(path);
+		System.out.println("wrote " + path + " (" + Files.size(path) + " bytes, weights "
+				+ Arrays.toString(LineCache.WEIGHTS) + ")");
+	}
+
+} // end TableFile class
@@ -0,0 +1,315 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regression suite of tactical positions. Each line of a suite file is one
+ * position:
+ *
+ *   board side; bm r,c ...; am r,c ...; mate n; id "name"
+ *
+ * board is 64 characters row by row ('.' empty, 'w' white, 'b' black), side
+ * is w or b, bm lists the moves that solve it and am the moves that must not
+ * be played (either may be left out), and mate n says the side to move wins
+ * within n of its own moves, which counts only if the player's score says
+ * so. Blank lines and lines starting with # are skipped.
+ *
+ * All positions are solved in parallel, each thread with its own player. A
+ * Player deepens one ply at a time until the node or time budget is spent;
+ * any other GomokuPlayer is asked once. The time budget is kept inside the
+ * search: a timer stops the Player when it runs out, and the depth it was
+ * in the middle of does not count, while other players are asked through a
+ * MoveRequest and cut off at the deadline. The node budget is checked
+ * between depths, so it is deterministic. The report gives the solve rate,
+ * the time and nodes at which each position was solved for good, and the
+ * deepest depth completed.
+ *
+ * Usage: java TacticalSuite file [player PlayerClass] [nodes n] [time ms] [threads t]
+ **/
+class TacticalSuite {
+
+	static final int MAX_DEPTH = 12;
+
+	// stops searches when their time budget runs out
+	static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Suite deadline");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * One test position
+	 */
+	static class Position {
+		String id = "";
+		final Color[][] board = new Color[GomokuBoard.ROWS][GomokuBoard.COLS];
+		Color toMove;
+		// cells as bits, row * 8 + col
+		long best;
+		long avoid;
+		int mate;
+
+		boolean solvedBy(Move move) {
+			if (move == null || move.row < 0 || move.row >= 8 || move.col < 0 || move.col >= 8)
+				return false;
+			long bit = 1L << (move.row * 8 + move.col);
+			return (best == 0 || (best & bit) != 0) && (avoid & bit) == 0;
+		}
+	}
+
+	/**
+	 * How a player did on one position
+	 */
+	static class Result {
+		Position position;
+		Move move;
+		boolean solved;
+		int depth;
+		// deepest depth searched to the end
+		int completed;
+		long micros = -1;
+		long nodes = -1;
+	}
+
+	String playerName = "Player";
+	long nodeBudget;
+	long timeBudget = 1000;
+	int threads = Runtime.getRuntime().availableProcessors();
+
+	static List<Position> load(String file) throws IOException {
+		List<Position> suite = new ArrayList<Position>();
+		int number = 0;
+		for (String line : Files.readAllLines(Paths.get(file))) {
+			number++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+			try {
+				suite.add(parse(line));
+			} catch (RuntimeException e) {
+				throw new IOException(file + ":" + number + ": " + e.getMessage());
+			}
+		}
+		return suite;
+	}
+
+	static Position parse(String line) {
+		String[] fields = line.split(";");
+		String[] head = fields[0].trim().split("\\s+");
+		if (head.length != 2 || head[0].length() != 64)
+			throw new IllegalArgumentException("expected a 64 cell board and a side to move");
+		Position position = new Position();
+		for (int cell = 0; cell < 64; cell++) {
+			char c = head[0].charAt(cell);
+			if (c == 'w')
+				position.board[cell / 8][cell % 8] = Color.white;
+			else if (c == 'b')
+				position.board[cell / 8][cell % 8] = Color.black;
+			else if (c != '.')
+				throw new IllegalArgumentException("unknown cell '" + c + "'");
+		}
+		position.toMove = head[1].equals("w") ? Color.white : Color.black;
+		for (int f = 1; f < fields.length; f++) {
+			String[] words = fields[f].trim().split("\\s+", 2);
+			String value = (words.length > 1) ? words[1].trim() : "";
+			switch (words[0]) {
+			case "bm":
+				position.best = cells(value);
+				break;
+			case "am":
+				position.avoid = cells(value);
+				break;
+			case "mate":
+				position.mate = Integer.parseInt(value);
+				break;
+			case "id":
+				position.id = value.replace("\"", "");
+				break;
+			case "":
+				break;
+			default:
+				throw new IllegalArgumentException("unknown field " + words[0]);
+			}
+		}
+		return position;
+	}
+
+	private static long cells(String list) {
+		long cells = 0;
+		for (String move : list.split("\\s+")) {
+			String[] rc = move.split(",");
+			cells |= 1L << (Integer.parseInt(rc[0]) * 8 + Integer.parseInt(rc[1]));
+		}
+		return cells;
+	}
+
+	/**
+	 * @return true if a Player's score says the side to move has five coming
+	 */
+	static boolean winning(int score, Color me) {
+		int five = LineCache.WEIGHTS[0] / 2;
+		return (me == Color.white) ? score >= five : score <= -five;
+	}
+
+	Result solve(GomokuPlayer player, Position position) {
+		Result result = new Result();
+		result.position = position;
+		long start = System.nanoTime();
+		if (!(player instanceof Player)) {
+			MoveRequest request = new MoveRequest(player, position.toMove).start(copy(position.board));
+			result.move = request.await(timeBudget > 0 ? start + timeBudget * 1000000 : Long.MAX_VALUE);
+			result.solved = position.solvedBy(result.move);
+			if (result.solved)
+				result.micros = (System.nanoTime() - start) / 1000;
+			return result;
+		}
+		Player searcher = (Player) player;
+		searcher.stop = false;
+		ScheduledFuture<?> deadline = (timeBudget > 0) ? TIMER.schedule(() -> {
+			searcher.stop = true;
+		}, timeBudget, TimeUnit.MILLISECONDS) : null;
+		long nodes = 0;
+		for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+			searcher.depth = depth;
+			Move move = searcher.chooseMove(copy(position.board), position.toMove);
+			nodes += searcher.nodes;
+			// the time ran out during this depth, its move is not a search result
+			if (searcher.stop)
+				break;
+			result.completed = depth;
+			boolean solved = position.solvedBy(move)
+					&& (position.mate == 0 || winning(searcher.lastScore, position.toMove));
+			// a position counts from the first depth that solves it and all deeper ones do
+			if (solved && !result.solved) {
+				result.depth = depth;
+				result.micros = (System.nanoTime() - start) / 1000;
+				result.nodes = nodes;
+			}
+			result.solved = solved;
+			result.move = move;
+			if (nodeBudget > 0 && nodes >= nodeBudget)
+				break;
+		}
+		if (deadline != null) {
+			// a deadline that already fired is waited for, so it cannot stop the next position
+			deadline.cancel(false);
+			try {
+				deadline.get();
+			} catch (CancellationException | ExecutionException e) {
+				// cancelled before it ran
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		// the player is reused for the next position
+		searcher.stop = false;
+		if (!result.solved) {
+			result.depth = 0;
+			result.micros = -1;
+			result.nodes = -1;
+		}
+		return result;
+	}
+
+	static Color[][] copy(Color[][] board) {
+		Color[][] copy = new Color[board.length][];
+		for (int row = 0; row < board.length; row++)
+			copy[row] = board[row].clone();
+		return copy;
+	}
+
+	List<Result> run(List<Position> suite) throws Exception {
+		ThreadLocal<GomokuPlayer> players = ThreadLocal.withInitial(() -> {
+			try {
+				GomokuPlayer player = HeadlessReferee.load(playerName);
+				if (player instanceof Player)
+					((Player) player).verbose = false;
+				return player;
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalArgumentException("cannot create " + playerName, e);
+			}
+		});
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Result>> futures = new ArrayList<Future<Result>>();
+			for (Position position : suite)
+				futures.add(pool.submit(() -> solve(players.get(), position)));
+			List<Result> results = new ArrayList<Result>();
+			for (Future<Result> future : futures)
+				results.add(future.get());
+			return results;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	static void report(List<Result> results) {
+		int solved = 0;
+		List<Long> times = new ArrayList<Long>();
+		List<Long> nodes = new ArrayList<Long>();
+		for (Result result : results) {
+			System.out.printf("%-6s %-32s %-6s", result.solved ? "ok" : "FAIL", result.position.id, result.move);
+			if (result.solved) {
+				solved++;
+				times.add(result.micros);
+				if (result.nodes >= 0) {
+					nodes.add(result.nodes);
+					System.out.printf(" depth %d, %d nodes,", result.depth, result.nodes);
+				}
+				System.out.printf(" %.1f ms", result.micros / 1000.0);
+			}
+			if (result.completed > 0)
+				System.out.printf(" (searched to depth %d)", result.completed);
+			System.out.println();
+		}
+		System.out.printf("solved %d/%d (%.0f%%)", solved, results.size(), 100.0 * solved / Math.max(1, results.size()));
+		if (!times.isEmpty())
+			System.out.printf(", median %.1f ms", median(times) / 1000.0);
+		if (!nodes.isEmpty())
+			System.out.printf(", median %d nodes", median(nodes));
+		System.out.println();
+	}
+
+	static long median(List<Long> values) {
+		long[] sorted = values.stream().mapToLong(Long::longValue).toArray();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.out.println("Usage: java TacticalSuite file [player PlayerClass] [nodes n] [time ms] [threads t]");
+			return;
+		}
+		TacticalSuite runner = new TacticalSuite();
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("player"))
+				runner.playerName = args[++i];
+			else if (args[i].equals("nodes")) {
+				runner.nodeBudget = Long.parseLong(args[++i]);
+				runner.timeBudget = 0;
+			} else if (args[i].equals("time"))
+				runner.timeBudget = Long.parseLong(args[++i]);
+			else if (args[i].equals("threads"))
+				runner.threads = Integer.parseInt(args[++i]);
+		}
+		List<Position> suite = load(args[0]);
+		long start = System.nanoTime();
+		List<Result> results = runner.run(suite);
+		report(results);
+		System.out.printf("%d positions in %.2fs%n", suite.size(), (System.nanoTime() - start) / 1e9);
+	}
+
+} // end TacticalSuite class
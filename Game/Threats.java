@@ -0,0 +1,46 @@
+/**
+ * Finds forcing moves straight from the bitboards, using the five cell
+ * window masks: a window holding four of one side's stones and none of the
+ * other's is one move from five, and one holding three is one move from
+ * such a four. Cells are bits of a long, cell = row * 8 + col.
+ **/
+class Threats {
+
+	/**
+	 * @return the empty cells that complete five for own
+	 */
+	static long fives(long own, long opp) {
+		return completing(own, opp, 4);
+	}
+
+	/**
+	 * @return the empty cells that make a four for own
+	 */
+	static long fours(long own, long opp) {
+		return completing(own, opp, 3);
+	}
+
+	/**
+	 * @return the cells in every window that gives own a four to make, where
+	 *         a stone of opp blocks them all at once; every cell if there is
+	 *         no such window
+	 */
+	static long blockingFours(long own, long opp) {
+		long cells = -1L;
+		for (long window : WindowEvaluator.WINDOWS) {
+			if ((opp & window) == 0 && Long.bitCount(own & window) == 3)
+				cells &= window;
+		}
+		return cells;
+	}
+
+	private static long completing(long own, long opp, int stones) {
+		long cells = 0;
+		for (long window : WindowEvaluator.WINDOWS) {
+			if ((opp & window) == 0 && Long.bitCount(own & window) == stones)
+				cells |= window & ~own;
+		}
+		return cells;
+	}
+
+} // end Threats class
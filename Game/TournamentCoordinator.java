@@ -0,0 +1,437 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs a round robin between player classes on worker JVMs, so no single
+ * heap holds every engine. Each ordered pair of players plays the given
+ * number of games, one work unit per game; game k of both colour orders
+ * starts from the same random opening. The units are dealt out in blocks,
+ * one deque per worker, and a worker that runs out takes units from the
+ * back of the fullest deque, so the blocks stay together while there is
+ * work and nobody idles at the end.
+ *
+ * Workers are TournamentWorker processes talking to the coordinator over
+ * a loopback socket, one line per message:
+ *
+ *   worker: HELLO pid                         once, on connecting
+ *   worker: NEXT                              asks for a unit
+ *   coordinator: GAME id white black k       a unit to play
+ *   coordinator: STOP                        no units left
+ *   worker: RESULT id winner reason moves ms the unit's result
+ *
+ * Results stream in as games finish and every one is appended to the
+ * checkpoint file as soon as it arrives. Started again with the same
+ * checkpoint, the coordinator skips the games already in it, so a long
+ * tournament can be resumed after the coordinator dies. The checkpoint
+ * starts with a SETTINGS line of the options that change results (limit,
+ * opening and adjudicate), and a checkpoint written with other settings is
+ * refused rather than mixed into one table. When a worker dies, or takes
+ * longer than the unit timeout over one game (by default twice the time
+ * limit for every move of a full board, plus time to start), it is killed,
+ * its unit goes back on a deque and a new worker is started, up to
+ * restarts times; a unit that has been tried three times is abandoned.
+ *
+ * Usage: java TournamentCoordinator Player... [games n] [workers w] [limit secs] [opening k] [adjudicate] [checkpoint file] [restarts r] [timeout secs]
+ **/
+class TournamentCoordinator {
+
+	static final int ATTEMPTS = 3;
+	// most moves in a game, one per cell
+	static final int MOVES = 64;
+
+	/**
+	 * One game of the round robin
+	 */
+	static class Unit {
+		final int id;
+		final String white;
+		final String black;
+		// game number of this pairing, which also seeds the opening
+		final int game;
+		int attempts;
+
+		Unit(int id, String white, String black, int game) {
+			this.id = id;
+			this.white = white;
+			this.black = black;
+			this.game = game;
+		}
+
+		String key() {
+			return white + " " + black + " " + game;
+		}
+	}
+
+	final List<String> players = new ArrayList<String>();
+	int games = 2;
+	int workers = Runtime.getRuntime().availableProcessors();
+	double timeLimit = 10.0;
+	int opening = 4;
+	Path checkpoint = Paths.get("tournament.txt");
+	int restarts = -1;
+	// workers end decided games early
+	boolean adjudicate;
+	// wall clock seconds a worker may spend on one unit, 0 for the default
+	double unitTimeout;
+
+	private final List<Deque<Unit>> queues = new ArrayList<Deque<Unit>>();
+	private final Map<Integer, Unit> units = new HashMap<Integer, Unit>();
+	private int remaining;
+	private int started;
+	// per player: wins, losses, draws
+	private final Map<String, int[]> standings = new LinkedHashMap<String, int[]>();
+	private PrintWriter results;
+
+	/**
+	 * @return the units of the round robin not already in the checkpoint
+	 */
+	List<Unit> schedule(Set<String> done) {
+		List<Unit> todo = new ArrayList<Unit>();
+		int id = 0;
+		for (String white : players) {
+			for (String black : players) {
+				if (white.equals(black))
+					continue;
+				for (int game = 0; game < games; game++) {
+					Unit unit = new Unit(id++, white, black, game);
+					if (!done.contains(unit.key()))
+						todo.add(unit);
+				}
+			}
+		}
+		return todo;
+	}
+
+	/**
+	 * The checkpoint's first line, the options that change the results
+	 */
+	String settings() {
+		return "SETTINGS limit " + timeLimit + " opening " + opening + " adjudicate " + adjudicate;
+	}
+
+	double unitTimeout() {
+		return (unitTimeout > 0) ? unitTimeout : 2 * MOVES * timeLimit + 30;
+	}
+
+	/**
+	 * Reads the finished games from the checkpoint into the standings
+	 *
+	 * @return the keys of the finished games
+	 * @throws IOException if the checkpoint was written with other settings
+	 */
+	Set<String> resume() throws IOException {
+		Set<String> done = new HashSet<String>();
+		if (!Files.exists(checkpoint))
+			return done;
+		String written = null;
+		for (String line : Files.readAllLines(checkpoint)) {
+			line = line.trim();
+			if (line.startsWith("SETTINGS"))
+				written = line;
+			// RESULT white black k winner reason moves
+			String[] fields = line.split("\\s+");
+			if (fields.length < 7 || !fields[0].equals("RESULT"))
+				continue;
+			done.add(fields[1] + " " + fields[2] + " " + fields[3]);
+			score(fields[1], fields[2], fields[4]);
+		}
+		if (!done.isEmpty() && !settings().equals(written)) {
+			throw new IOException(checkpoint + " was written with "
+					+ (written != null ? "\"" + written + "\"" : "unknown settings") + ", not \"" + settings()
+					+ "\"; resume with the same options or use another checkpoint file");
+		}
+		return done;
+	}
+
+	void score(String white, String black, String winner) {
+		int[] w = standings.computeIfAbsent(white, name -> new int[3]);
+		int[] b = standings.computeIfAbsent(black, name -> new int[3]);
+		if (winner.equals("White")) {
+			w[0]++;
+			b[1]++;
+		} else if (winner.equals("Black")) {
+			b[0]++;
+			w[1]++;
+		} else {
+			w[2]++;
+			b[2]++;
+		}
+	}
+
+	/**
+	 * Deals the units out in equal blocks, one deque per worker
+	 */
+	void deal(List<Unit> todo) {
+		for (int w = 0; w < workers; w++)
+			queues.add(new ArrayDeque<Unit>());
+		for (int i = 0; i < todo.size(); i++) {
+			Unit unit = todo.get(i);
+			units.put(unit.id, unit);
+			queues.get((int) ((long) i * workers / todo.size())).addLast(unit);
+		}
+		remaining = todo.size();
+	}
+
+	/**
+	 * @return the next unit for the worker owning the given deque, taken from
+	 *         its own front or the back of the fullest other deque, or null if
+	 *         there are none left
+	 */
+	synchronized Unit next(int queue) {
+		Unit unit = queues.get(queue).pollFirst();
+		if (unit == null) {
+			Deque<Unit> victim = null;
+			for (Deque<Unit> other : queues) {
+				if (victim == null || other.size() > victim.size())
+					victim = other;
+			}
+			unit = victim.pollLast();
+		}
+		if (unit != null)
+			unit.attempts++;
+		return unit;
+	}
+
+	/**
+	 * Puts back the unit of a worker that went away, unless it has been tried
+	 * too often
+	 */
+	synchronized void retry(Unit unit) {
+		if (unit.attempts < ATTEMPTS) {
+			queues.get(0).addFirst(unit);
+			return;
+		}
+		System.out.println("game " + unit.id + " " + unit.key() + " abandoned after " + unit.attempts + " attempts");
+		units.remove(unit.id);
+		finished();
+	}
+
+	synchronized void record(Unit unit, String winner, String reason, int moves, long millis) {
+		// a unit may come back twice if its first worker looked dead but was not
+		if (units.remove(unit.id) == null)
+			return;
+		score(unit.white, unit.black, winner);
+		results.printf("RESULT %s %s %s %d%n", unit.key(), winner, reason, moves);
+		results.flush();
+		System.out.printf("game %d %s vs %s (%d): %s WINS, %s after %d moves, %.1fs%n", unit.id, unit.white,
+				unit.black, unit.game, winner, reason, moves, millis / 1000.0);
+		finished();
+	}
+
+	private void finished() {
+		remaining--;
+		notifyAll();
+	}
+
+	private int queued() {
+		int queued = 0;
+		for (Deque<Unit> queue : queues)
+			queued += queue.size();
+		return queued;
+	}
+
+	/**
+	 * Talks to one worker until it has no more units or goes away
+	 */
+	void serve(Socket socket, int queue) {
+		Unit current = null;
+		ProcessHandle process = null;
+		boolean hung = false;
+		try (Socket s = socket;
+				BufferedReader in = new BufferedReader(
+						new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+				PrintWriter out = new PrintWriter(s.getOutputStream(), true)) {
+			for (String line = in.readLine(); line != null; line = in.readLine()) {
+				String[] fields = line.trim().split("\\s+");
+				if (fields[0].equals("HELLO") && fields.length >= 2) {
+					process = ProcessHandle.of(Long.parseLong(fields[1])).orElse(null);
+				} else if (fields[0].equals("RESULT") && current != null && fields.length >= 6
+						&& Integer.parseInt(fields[1]) == current.id) {
+					record(current, fields[2], fields[3], Integer.parseInt(fields[4]), Long.parseLong(fields[5]));
+					current = null;
+					s.setSoTimeout(0);
+				} else if (fields[0].equals("NEXT")) {
+					current = next(queue);
+					if (current == null) {
+						out.println("STOP");
+						return;
+					}
+					// a worker that hangs without dying is given up on at the unit timeout
+					s.setSoTimeout((int) Math.min(Integer.MAX_VALUE, unitTimeout() * 1000));
+					out.printf("GAME %d %s %s %d%n", current.id, current.white, current.black, current.game);
+				}
+			}
+		} catch (SocketTimeoutException e) {
+			hung = true;
+		} catch (IOException | RuntimeException e) {
+			System.err.println("worker " + queue + ": " + e);
+		}
+		if (current != null) {
+			if (hung) {
+				System.out.printf("worker %d took over %.1fs on game %d, killed%n", queue, unitTimeout(), current.id);
+				if (process != null)
+					process.destroyForcibly();
+			} else {
+				System.out.println("worker " + queue + " went away during game " + current.id);
+			}
+			retry(current);
+		}
+	}
+
+	/**
+	 * Starts a worker JVM on the coordinator's class path
+	 */
+	Process spawn(int port) throws IOException {
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				"TournamentWorker", String.valueOf(port), String.valueOf(timeLimit), String.valueOf(opening),
+				adjudicate ? "adjudicate" : "play");
+		// the players may print every move, only errors are passed on
+		builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		return builder.start();
+	}
+
+	void run() throws Exception {
+		Set<String> done = resume();
+		List<Unit> todo = schedule(done);
+		System.out.println(done.size() + " games in " + checkpoint + ", " + todo.size() + " to play on " + workers
+				+ " workers");
+		if (todo.isEmpty()) {
+			report();
+			return;
+		}
+		deal(todo);
+		int restartsLeft = (restarts >= 0) ? restarts : workers * 4;
+		List<Process> processes = new ArrayList<Process>();
+		boolean fresh = done.isEmpty();
+		try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress());
+				PrintWriter out = new PrintWriter(new BufferedWriter(Files.newBufferedWriter(checkpoint,
+						StandardOpenOption.CREATE, fresh ? StandardOpenOption.TRUNCATE_EXISTING
+								: StandardOpenOption.APPEND)))) {
+			results = out;
+			if (fresh) {
+				out.println(settings());
+				out.flush();
+			}
+			int port = server.getLocalPort();
+			Thread acceptor = new Thread(() -> {
+				int connection = 0;
+				while (!server.isClosed()) {
+					try {
+						Socket socket = server.accept();
+						// a replacement worker starts on an empty deque of its own and steals
+						int queue;
+						synchronized (this) {
+							if (connection >= queues.size())
+								queues.add(new ArrayDeque<Unit>());
+							queue = connection++;
+						}
+						Thread thread = new Thread(() -> serve(socket, queue), "Worker " + queue);
+						thread.setDaemon(true);
+						thread.start();
+					} catch (IOException e) {
+						// closed at the end of the run
+					}
+				}
+			}, "Acceptor");
+			acceptor.setDaemon(true);
+			acceptor.start();
+			for (int w = 0; w < workers; w++)
+				processes.add(spawn(port));
+			started = workers;
+			synchronized (this) {
+				while (remaining > 0) {
+					wait(1000);
+					int alive = 0;
+					for (Process process : processes) {
+						if (process.isAlive())
+							alive++;
+					}
+					// replace dead workers while there are units waiting
+					while (alive < Math.min(workers, queued()) && restartsLeft > 0) {
+						processes.add(spawn(port));
+						started++;
+						restartsLeft--;
+						alive++;
+					}
+					if (alive == 0 && restartsLeft == 0 && remaining > 0) {
+						System.out.println("no workers left, " + remaining + " games not played");
+						break;
+					}
+				}
+			}
+		} finally {
+			for (Process process : processes)
+				process.destroy();
+		}
+		System.out.println(started + " workers started");
+		report();
+	}
+
+	synchronized void report() {
+		System.out.println("Standings (wins, losses, draws):");
+		for (Map.Entry<String, int[]> entry : standings.entrySet()) {
+			int[] s = entry.getValue();
+			System.out.printf("%-24s %5d %5d %5d%n", entry.getKey(), s[0], s[1], s[2]);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		TournamentCoordinator coordinator = new TournamentCoordinator();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("games"))
+				coordinator.games = Integer.parseInt(args[++i]);
+			else if (args[i].equals("workers"))
+				coordinator.workers = Integer.parseInt(args[++i]);
+			else if (args[i].equals("limit"))
+				coordinator.timeLimit = Double.parseDouble(args[++i]);
+			else if (args[i].equals("opening"))
+				coordinator.opening = Integer.parseInt(args[++i]);
+			else if (args[i].equals("checkpoint"))
+				coordinator.checkpoint = Paths.get(args[++i]);
+			else if (args[i].equals("adjudicate"))
+				coordinator.adjudicate = true;
+			else if (args[i].equals("restarts"))
+				coordinator.restarts = Integer.parseInt(args[++i]);
+			else if (args[i].equals("timeout"))
+				coordinator.unitTimeout = Double.parseDouble(args[++i]);
+			else
+				coordinator.players.add(args[i]);
+		}
+		if (coordinator.players.size() < 2) {
+			System.out.println("Usage: java TournamentCoordinator Player... [games n] [workers w] [limit secs] [opening k] [adjudicate] [checkpoint file] [restarts r] [timeout secs]");
+			return;
+		}
+		long start = System.nanoTime();
+		try {
+			coordinator.run();
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+			System.exit(1);
+		}
+		System.out.printf("%.1fs%n", (System.nanoTime() - start) / 1e9);
+	}
+
+} // end TournamentCoordinator class
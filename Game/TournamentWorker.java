@@ -0,0 +1,77 @@
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Worker JVM of a TournamentCoordinator. Connects to the coordinator on the
+ * loopback port, then asks for games one at a time and plays each on a
+ * HeadlessReferee, with its FastBoard move rules and time limit, until
+ * there are none left. One instance of each player class is kept per
+ * colour for the life of the worker, so caches and the JIT stay warm from
+ * game to game.
+ *
+ * Usage: java TournamentWorker port [limit secs] [opening k] [adjudicate]
+ **/
+class TournamentWorker {
+
+	final HeadlessReferee referee = new HeadlessReferee();
+	private final Map<String, GomokuPlayer> players = new HashMap<String, GomokuPlayer>();
+
+	GomokuPlayer player(String name, Color colour) throws ReflectiveOperationException {
+		String key = name + " " + HeadlessReferee.colorToString(colour);
+		GomokuPlayer player = players.get(key);
+		if (player == null) {
+			player = HeadlessReferee.load(name);
+			if (player instanceof Player)
+				((Player) player).verbose = false;
+			players.put(key, player);
+		}
+		return player;
+	}
+
+	void run(int port) throws Exception {
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+				BufferedReader in = new BufferedReader(
+						new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+				PrintWriter out = new PrintWriter(socket.getOutputStream(), true)) {
+			// the coordinator kills a worker that hangs by its process id
+			out.println("HELLO " + ProcessHandle.current().pid());
+			out.println("NEXT");
+			for (String line = in.readLine(); line != null && line.startsWith("GAME"); line = in.readLine()) {
+				// GAME id white black k
+				String[] fields = line.split("\\s+");
+				referee.openingSeed = Integer.parseInt(fields[4]);
+				long start = System.nanoTime();
+				Color winner = referee.playGame(player(fields[2], Color.white), player(fields[3], Color.black));
+				String reason = GameRecord.REASONS[HeadlessReferee.reason(referee.lastStatus)];
+				out.printf("RESULT %s %s %s %d %d%nNEXT%n", fields[1], HeadlessReferee.colorToString(winner), reason,
+						referee.board.getMoveCount(), (System.nanoTime() - start) / 1000000);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.out.println("Usage: java TournamentWorker port [limit secs] [opening k] [adjudicate]");
+			return;
+		}
+		System.setProperty("java.awt.headless", "true");
+		TournamentWorker worker = new TournamentWorker();
+		if (args.length > 1)
+			worker.referee.timeLimit = Double.parseDouble(args[1]);
+		if (args.length > 2)
+			worker.referee.opening = Integer.parseInt(args[2]);
+		if (args.length > 3 && args[3].equals("adjudicate"))
+			worker.referee.adjudicator = new Adjudicator();
+		worker.run(Integer.parseInt(args[0]));
+		// a player cut off at its deadline may still be running on a daemon thread
+		System.exit(0);
+	}
+
+} // end TournamentWorker class
@@ -0,0 +1,115 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stress test and throughput benchmark for the shared transposition table.
+ * Every thread stores and probes random keys from a key space larger than
+ * the table, so slots are constantly fought over and replaced. The entry
+ * stored for a key is a function of the key, so any hit that does not
+ * match it is a torn or mixed up slot. Runs with 1 thread, doubling up to
+ * the given number.
+ *
+ * Usage: java TranspositionBenchmark [threads n] [seconds s] [size slots]
+ **/
+class TranspositionBenchmark {
+
+	int maxThreads = Runtime.getRuntime().availableProcessors();
+	double seconds = 2;
+	int size = 1 << 16;
+
+	static int expectedScore(long key) {
+		return (int) Zobrist.mix(key);
+	}
+
+	static int expectedDepth(long key) {
+		return (int) (key >>> 3) & 31;
+	}
+
+	static int expectedBound(long key) {
+		return 1 + (int) Long.remainderUnsigned(key, 3);
+	}
+
+	static int expectedMove(long key) {
+		return (int) (key >>> 11) & 63;
+	}
+
+	/**
+	 * Hammers one table from the given number of threads
+	 *
+	 * @return {operations, hits, bad entries}
+	 */
+	long[] run(int threads) throws InterruptedException {
+		TranspositionTable table = new TranspositionTable(size);
+		AtomicLong operations = new AtomicLong();
+		AtomicLong hits = new AtomicLong();
+		AtomicLong bad = new AtomicLong();
+		long end = System.nanoTime() + (long) (seconds * 1e9);
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			final long seed = t;
+			Thread thread = new Thread(() -> {
+				SplittableRandom random = new SplittableRandom(seed);
+				long ops = 0, found = 0, wrong = 0;
+				// keys are drawn from four times as many positions as there are slots
+				int keys = table.size() * 4;
+				while (System.nanoTime() < end) {
+					for (int i = 0; i < 1024; i++) {
+						long key = Zobrist.mix(random.nextInt(keys) + 1);
+						if ((i & 1) == 0) {
+							table.newSearch();
+							table.store(key, expectedDepth(key), expectedBound(key), expectedScore(key),
+									expectedMove(key));
+						} else {
+							long entry = table.probe(key);
+							if (entry != TranspositionTable.MISS) {
+								found++;
+								if (TranspositionTable.score(entry) != expectedScore(key)
+										|| TranspositionTable.depth(entry) != expectedDepth(key)
+										|| TranspositionTable.bound(entry) != expectedBound(key)
+										|| TranspositionTable.move(entry) != expectedMove(key))
+									wrong++;
+							}
+						}
+					}
+					ops += 1024;
+				}
+				operations.addAndGet(ops);
+				hits.addAndGet(found);
+				bad.addAndGet(wrong);
+				done.countDown();
+			});
+			thread.start();
+		}
+		done.await();
+		return new long[] { operations.get(), hits.get(), bad.get() };
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		TranspositionBenchmark benchmark = new TranspositionBenchmark();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("threads"))
+				benchmark.maxThreads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("seconds"))
+				benchmark.seconds = Double.parseDouble(args[++i]);
+			else if (args[i].equals("size"))
+				benchmark.size = Integer.parseInt(args[++i]);
+		}
+		// warm up the JIT before timing
+		double timed = benchmark.seconds;
+		benchmark.seconds = 0.5;
+		benchmark.run(1);
+		benchmark.seconds = timed;
+		long failures = 0;
+		for (int threads = 1;; threads = Math.min(threads * 2, benchmark.maxThreads)) {
+			long[] result = benchmark.run(threads);
+			failures += result[2];
+			System.out.printf("%2d threads %8.1f M ops/s  %5.1f%% hits  %d bad entries%n", threads,
+					result[0] / benchmark.seconds / 1e6, 200.0 * result[1] / result[0], result[2]);
+			if (threads >= benchmark.maxThreads)
+				break;
+		}
+		System.out.println(failures == 0 ? "no bad entries" : "FAILED: " + failures + " bad entries");
+	}
+
+} // end TranspositionBenchmark class
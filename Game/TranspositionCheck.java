@@ -0,0 +1,139 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Stress check of the lock-free TranspositionTable: many threads store and
+ * probe a handful of keys in a table of one bucket, so nearly every store
+ * races another store to the same slot, often of the same key with a
+ * different entry. Every entry stored for a key is one of two variants that
+ * can be told apart, so a hit that is neither is an entry torn between two
+ * writers or handed back for the wrong key. Any such hit fails the check.
+ *
+ * The same workload is run against a table that keeps the hash and the entry
+ * apart without the xor, to show the races do happen: it hands back bad
+ * entries even on one core, where a writer can be preempted between its
+ * two writes.
+ *
+ * Usage: java TranspositionCheck [threads n] [seconds s] [keys k]
+ **/
+class TranspositionCheck {
+
+	int threads = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+	double seconds = 2;
+	int keys = 8;
+
+	/**
+	 * The slots of one bucket with the hash and the entry stored as they are,
+	 * the scheme the xor replaces
+	 */
+	static class UnguardedTable {
+		final AtomicLongArray hashes = new AtomicLongArray(TranspositionTable.WAYS);
+		final AtomicLongArray entries = new AtomicLongArray(TranspositionTable.WAYS);
+
+		long probe(long hash) {
+			for (int slot = 0; slot < TranspositionTable.WAYS; slot++) {
+				if (hashes.getOpaque(slot) == hash)
+					return entries.getOpaque(slot);
+			}
+			return TranspositionTable.MISS;
+		}
+
+		void store(long hash, int depth, int bound, int score, int move) {
+			int slot = (int) (hash & (TranspositionTable.WAYS - 1));
+			hashes.setOpaque(slot, hash);
+			entries.setOpaque(slot, TranspositionTable.pack(depth, bound, score, move, 0));
+		}
+	}
+
+	static long key(int index) {
+		return Zobrist.mix(index + 1);
+	}
+
+	/**
+	 * @return true if the entry is one of the two stored for the key
+	 */
+	static boolean valid(long key, long entry) {
+		int variant = TranspositionTable.depth(entry) - TranspositionBenchmark.expectedDepth(key);
+		return (variant == 0 || variant == 1)
+				&& TranspositionTable.score(entry) == TranspositionBenchmark.expectedScore(key) + variant
+				&& TranspositionTable.bound(entry) == TranspositionBenchmark.expectedBound(key)
+				&& TranspositionTable.move(entry) == TranspositionBenchmark.expectedMove(key);
+	}
+
+	/**
+	 * Runs the workload on the real table, or the unguarded one
+	 *
+	 * @return {hits, bad entries}
+	 */
+	long[] run(boolean guarded) throws InterruptedException {
+		TranspositionTable table = new TranspositionTable(TranspositionTable.WAYS);
+		UnguardedTable unguarded = new UnguardedTable();
+		AtomicLong hits = new AtomicLong();
+		AtomicLong bad = new AtomicLong();
+		long end = System.nanoTime() + (long) (seconds * 1e9);
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			final long seed = t;
+			Thread thread = new Thread(() -> {
+				SplittableRandom random = new SplittableRandom(seed);
+				long found = 0, wrong = 0;
+				while (System.nanoTime() < end) {
+					for (int i = 0; i < 1024; i++) {
+						long key = key(random.nextInt(keys));
+						if (random.nextBoolean()) {
+							int variant = random.nextInt(2);
+							int depth = TranspositionBenchmark.expectedDepth(key) + variant;
+							int bound = TranspositionBenchmark.expectedBound(key);
+							int score = TranspositionBenchmark.expectedScore(key) + variant;
+							int move = TranspositionBenchmark.expectedMove(key);
+							if (guarded) {
+								// a new age every time, so deeper entries never block a store
+								table.newSearch();
+								table.store(key, depth, bound, score, move);
+							} else {
+								unguarded.store(key, depth, bound, score, move);
+							}
+						} else {
+							long entry = guarded ? table.probe(key) : unguarded.probe(key);
+							if (entry != TranspositionTable.MISS) {
+								found++;
+								if (!valid(key, entry))
+									wrong++;
+							}
+						}
+					}
+				}
+				hits.addAndGet(found);
+				bad.addAndGet(wrong);
+				done.countDown();
+			});
+			thread.start();
+		}
+		done.await();
+		return new long[] { hits.get(), bad.get() };
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		TranspositionCheck check = new TranspositionCheck();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("threads"))
+				check.threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("seconds"))
+				check.seconds = Double.parseDouble(args[++i]);
+			else if (args[i].equals("keys"))
+				check.keys = Integer.parseInt(args[++i]);
+		}
+		long[] control = check.run(false);
+		System.out.printf("%-20s %10d hits %8d bad entries%n", "unguarded table", control[0], control[1]);
+		long[] result = check.run(true);
+		System.out.printf("%-20s %10d hits %8d bad entries%n", "transposition table", result[0], result[1]);
+		if (result[0] == 0 || result[1] != 0) {
+			System.out.println(result[0] == 0 ? "FAILED: no hits" : "FAILED: bad entries returned");
+			System.exit(1);
+		}
+		System.out.println("no bad entries");
+	}
+
+} // end TranspositionCheck class
@@ -0,0 +1,155 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Search results keyed by position hash, shared by any number of search
+ * threads without locks. Each slot is two longs, the entry and the hash
+ * xored with the entry. A reader only accepts a slot when the two agree with
+ * the hash it is looking for, so a slot torn by two racing writers looks
+ * like a miss instead of handing back another position's entry. Each long
+ * is read and written with opaque access so it cannot tear by itself.
+ *
+ * Slots are grouped in buckets of four. A store replaces the slot that
+ * already holds the position, else the least valuable one: entries left
+ * from an older search go first, then the shallowest.
+ *
+ * Entry bits: score 0-31 (white's point of view), depth 32-37, bound 38-39,
+ * best move cell 40-46 (NO_MOVE if none), age 48-55.
+ **/
+class TranspositionTable {
+
+	static final long MISS = 0;
+
+	// kinds of score, zero is kept for empty slots
+	static final int EXACT = 1;
+	static final int LOWER = 2;
+	static final int UPPER = 3;
+
+	static final int NO_MOVE = 127;
+	static final int MAX_DEPTH = 63;
+	static final int WAYS = 4;
+
+	private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(long[].class);
+
+	private final long[] keys;
+	private final long[] entries;
+	private final int bucketMask;
+	private volatile int age;
+	private final LongAdder probes = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+
+	/**
+	 * @param size number of slots, rounded up to a power of two of at least one bucket
+	 */
+	TranspositionTable(int size) {
+		int slots = Math.max(WAYS, Integer.highestOneBit(Math.max(1, size - 1)) << 1);
+		keys = new long[slots];
+		entries = new long[slots];
+		bucketMask = slots / WAYS - 1;
+	}
+
+	static long pack(int depth, int bound, int score, int move, int age) {
+		return (score & 0xFFFFFFFFL) | ((long) Math.min(depth, MAX_DEPTH) << 32) | ((long) bound << 38)
+				| ((long) move << 40) | ((long) (age & 0xFF) << 48);
+	}
+
+	static int score(long entry) {
+		return (int) entry;
+	}
+
+	static int depth(long entry) {
+		return (int) (entry >>> 32) & 63;
+	}
+
+	static int bound(long entry) {
+		return (int) (entry >>> 38) & 3;
+	}
+
+	static int move(long entry) {
+		return (int) (entry >>> 40) & 127;
+	}
+
+	static int age(long entry) {
+		return (int) (entry >>> 48) & 0xFF;
+	}
+
+	/**
+	 * Starts a new search, so entries stored before it are replaced first
+	 */
+	void newSearch() {
+		age = (age + 1) & 0xFF;
+	}
+
+	private int bucket(long hash) {
+		// the low bits pick the slot in other hashed tables, use the high ones here;
+		// 32 of them cover the most buckets an int sized table can have
+		return (int) (hash >>> 32) & bucketMask;
+	}
+
+	/**
+	 * @return the entry for this hash, or MISS
+	 */
+	long probe(long hash) {
+		probes.increment();
+		int first = bucket(hash) * WAYS;
+		for (int slot = first; slot < first + WAYS; slot++) {
+			long entry = (long) SLOT.getOpaque(entries, slot);
+			long key = (long) SLOT.getOpaque(keys, slot);
+			if (entry != MISS && (key ^ entry) == hash) {
+				hits.increment();
+				return entry;
+			}
+		}
+		return MISS;
+	}
+
+	void store(long hash, int depth, int bound, int score, int move) {
+		int current = age;
+		long entry = pack(depth, bound, score, move, current);
+		int first = bucket(hash) * WAYS;
+		int victim = first;
+		int worst = Integer.MAX_VALUE;
+		for (int slot = first; slot < first + WAYS; slot++) {
+			long old = (long) SLOT.getOpaque(entries, slot);
+			long key = (long) SLOT.getOpaque(keys, slot);
+			if (old == MISS || (key ^ old) == hash) {
+				// keep a deeper result for the same position from this search
+				if (old != MISS && age(old) == current && depth(old) > depth && bound != EXACT)
+					return;
+				victim = slot;
+				break;
+			}
+			int value = depth(old) + (age(old) == current ? MAX_DEPTH + 1 : 0);
+			if (value < worst) {
+				worst = value;
+				victim = slot;
+			}
+		}
+		SLOT.setOpaque(entries, victim, entry);
+		SLOT.setOpaque(keys, victim, hash ^ entry);
+	}
+
+	double hitRate() {
+		long total = probes.sum();
+		return total == 0 ? 0 : (double) hits.sum() / total;
+	}
+
+	void clear() {
+		for (int i = 0; i < entries.length; i++) {
+			SLOT.setOpaque(entries, i, MISS);
+			SLOT.setOpaque(keys, i, 0L);
+		}
+		probes.reset();
+		hits.reset();
+	}
+
+	int size() {
+		return entries.length;
+	}
+
+	public String toString() {
+		return String.format("transposition table: %d probes, %.1f%% hits", probes.sum(), hitRate() * 100);
+	}
+
+} // end TranspositionTable class
@@ -0,0 +1,9 @@
+/**
+ * Marks a player that never writes to the board passed to chooseMove, so a
+ * headless referee may hand it the live board instead of a copy. The board
+ * changes once the referee moves on, so the player must take what it needs
+ * from it at the start of chooseMove; a player cut off at a deadline may
+ * still be searching then.
+ **/
+interface TrustedPlayer {
+}
@@ -0,0 +1,247 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Texel style tuning of the evaluation weights. Player's evaluation is
+ * linear in its four weights, so every labelled position in a record file,
+ * a move with a score as SelfPlay writes them, is
+ * reduced once to four features, white's minus black's count of windows 0, 1,
+ * 2 and 3 stones away from five, stored column by column in int arrays and
+ * cached next to the record file. A local search then moves one weight at a
+ * time by a multiplicative step while the mean squared error between the game
+ * result and a sigmoid of the score goes down, each error computed in
+ * parallel over chunks of the arrays. The result is written as the weights
+ * file that LineCache loads at startup.
+ *
+ * Usage: java Tuner records [out weights.txt] [rounds n]
+ **/
+class Tuner {
+
+	static final int FEATURES = 4;
+	private static final int CHUNK = 1 << 14;
+	// first int of the features file, raised when extract changes what it keeps
+	static final int CACHE_VERSION = 2;
+
+	// feature columns and results, 1 for a white win, 0 for black and 0.5 for a draw
+	int[][] features = new int[FEATURES][];
+	float[] results;
+	int size;
+	// sigmoid scale, fitted to the starting weights
+	double k = 1.0 / 100;
+
+	// per line window counts by packed line, see LineCache.windowCounts
+	static final long[] LINE_COUNTS = new long[1 << 16];
+
+	static {
+		for (int packed = 0; packed < LINE_COUNTS.length; packed++) {
+			LINE_COUNTS[packed] = LineCache.windowCounts(packed);
+		}
+	}
+
+	/**
+	 * Replays every game and extracts the features of each labelled position,
+	 * the position before a move that has a search score
+	 */
+	void extract(GameRecordReader reader) {
+		int capacity = 1 << 16;
+		for (int f = 0; f < FEATURES; f++)
+			features[f] = new int[capacity];
+		results = new float[capacity];
+		size = 0;
+		LineCache lines = new LineCache();
+		for (long game = reader.first(); game < reader.end(); game = reader.next(game)) {
+			int reason = reader.reason(game);
+			if (reason == GameRecord.ILLEGAL || reason == GameRecord.TIMEOUT)
+				continue;
+			int winner = reader.winner(game);
+			float result = (winner == LineCache.WHITE) ? 1 : (winner == LineCache.BLACK) ? 0 : 0.5f;
+			int count = reader.moveCount(game);
+			for (int ply = 0; ply < count; ply++) {
+				if (reader.score(game, ply) != GameRecord.NO_SCORE) {
+					if (size == capacity) {
+						capacity *= 2;
+						for (int f = 0; f < FEATURES; f++)
+							features[f] = Arrays.copyOf(features[f], capacity);
+						results = Arrays.copyOf(results, capacity);
+					}
+					long counts = 0;
+					for (int line = 0; line < LineCache.LINES; line++)
+						counts += LINE_COUNTS[lines.lines[line]];
+					for (int f = 0; f < FEATURES; f++) {
+						features[f][size] = LineCache.count(counts, f, LineCache.WHITE)
+								- LineCache.count(counts, f, LineCache.BLACK);
+					}
+					results[size++] = result;
+				}
+				lines.makeMove(reader.move(game, ply), (ply % 2 == 0) ? LineCache.WHITE : LineCache.BLACK);
+			}
+			for (int ply = count - 1; ply >= 0; ply--)
+				lines.unmakeMove(reader.move(game, ply));
+		}
+	}
+
+	void save(Path cache) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(cache)))) {
+			out.writeInt(CACHE_VERSION);
+			out.writeInt(size);
+			for (int f = 0; f < FEATURES; f++) {
+				for (int i = 0; i < size; i++)
+					out.writeInt(features[f][i]);
+			}
+			for (int i = 0; i < size; i++)
+				out.writeFloat(results[i]);
+		}
+	}
+
+	void load(Path cache) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cache)))) {
+			if (in.readInt() != CACHE_VERSION)
+				throw new IOException(cache + " is from another version");
+			size = in.readInt();
+			for (int f = 0; f < FEATURES; f++) {
+				features[f] = new int[size];
+				for (int i = 0; i < size; i++)
+					features[f][i] = in.readInt();
+			}
+			results = new float[size];
+			for (int i = 0; i < size; i++)
+				results[i] = in.readFloat();
+		}
+	}
+
+	/**
+	 * Mean squared error of the predicted results, summed over chunks in parallel
+	 */
+	double error(int[] weights, double k) {
+		int[] f0 = features[0], f1 = features[1], f2 = features[2], f3 = features[3];
+		float[] r = results;
+		int w0 = weights[0], w1 = weights[1], w2 = weights[2], w3 = weights[3];
+		double sum = IntStream.range(0, (size + CHUNK - 1) / CHUNK).parallel().mapToDouble(chunk -> {
+			double error = 0;
+			int end = Math.min(size, (chunk + 1) * CHUNK);
+			for (int i = chunk * CHUNK; i < end; i++) {
+				double score = (double) w0 * f0[i] + (double) w1 * f1[i] + (double) w2 * f2[i] + (double) w3 * f3[i];
+				double predicted = 1 / (1 + Math.exp(-k * score));
+				error += (r[i] - predicted) * (r[i] - predicted);
+			}
+			return error;
+		}).sum();
+		return sum / Math.max(1, size);
+	}
+
+	/**
+	 * Picks the sigmoid scale that best fits the starting weights
+	 */
+	void fitScale(int[] weights) {
+		double best = error(weights, k);
+		for (double step = 2; step > 1.01; step = Math.sqrt(step)) {
+			boolean improved = true;
+			while (improved) {
+				improved = false;
+				for (double candidate : new double[] { k * step, k / step }) {
+					double error = error(weights, candidate);
+					if (error < best) {
+						best = error;
+						k = candidate;
+						improved = true;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Local search, scaling one weight at a time up or down while it helps
+	 */
+	int[] tune(int[] start, int rounds) {
+		int[] weights = start.clone();
+		double best = error(weights, k);
+		System.out.printf("start %s error %.6f%n", Arrays.toString(weights), best);
+		double step = 1.5;
+		for (int round = 0; round < rounds && step > 1.01; round++) {
+			boolean improved = false;
+			for (int w = 0; w < FEATURES; w++) {
+				for (int direction = 0; direction < 2; direction++) {
+					int[] candidate = weights.clone();
+					long value = Math.round((direction == 0) ? weights[w] * step : weights[w] / step);
+					// always move by at least one
+					if (value == weights[w])
+						value += (direction == 0) ? 1 : -1;
+					candidate[w] = (int) Math.max(0, Math.min(Integer.MAX_VALUE / 512, value));
+					double error = error(candidate, k);
+					if (error < best) {
+						best = error;
+						weights = candidate;
+						improved = true;
+						break;
+					}
+				}
+			}
+			if (!improved)
+				step = Math.sqrt(step);
+			System.out.printf("round %d %s error %.6f%n", round, Arrays.toString(weights), best);
+		}
+		return weights;
+	}
+
+	static void write(Path path, int[] weights) throws IOException {
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+			out.println("# windows 0, 1, 2 and 3 stones away from five, written by Tuner");
+			out.println(weights[0] + " " + weights[1] + " " + weights[2] + " " + weights[3]);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: java Tuner records [out weights.txt] [rounds n]");
+			return;
+		}
+		Path records = Paths.get(args[0]);
+		Path out = Paths.get("weights.txt");
+		int rounds = 100;
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("out"))
+				out = Paths.get(args[++i]);
+			else if (args[i].equals("rounds"))
+				rounds = Integer.parseInt(args[++i]);
+		}
+		Tuner tuner = new Tuner();
+		Path cache = Paths.get(args[0] + ".features");
+		long start = System.nanoTime();
+		boolean cached = false;
+		if (Files.exists(cache) && Files.getLastModifiedTime(cache).compareTo(Files.getLastModifiedTime(records)) > 0) {
+			try {
+				tuner.load(cache);
+				cached = true;
+			} catch (IOException e) {
+				System.out.println(e.getMessage() + ", extracting again");
+			}
+		}
+		if (!cached) {
+			tuner.extract(new GameRecordReader(records));
+			tuner.save(cache);
+		}
+		if (tuner.size == 0) {
+			System.out.println("No labelled positions in " + records + ", record games with SelfPlay");
+			return;
+		}
+		System.out.printf("%d positions ready in %.2fs%n", tuner.size, (System.nanoTime() - start) / 1e9);
+		tuner.fitScale(LineCache.WEIGHTS);
+		System.out.println("sigmoid scale " + tuner.k);
+		start = System.nanoTime();
+		int[] weights = tuner.tune(LineCache.WEIGHTS, rounds);
+		System.out.printf("tuned in %.2fs%n", (System.nanoTime() - start) / 1e9);
+		write(out, weights);
+		System.out.println("wrote " + out);
+	}
+
+} // end Tuner class
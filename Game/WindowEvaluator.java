@@ -0,0 +1,94 @@
+import java.util.Arrays;
+
+/**
+ * Evaluates straight from the two bitboards: every five cell window of the
+ * board is a 64 bit mask, and a popcount of each colour's stones under the
+ * mask says how far the window is from five. Gives the same scores as the
+ * line cache. This is the scalar version, VectorWindowEvaluator counts
+ * several windows at once with the incubating Vector API; use create() to
+ * get the vector one when the jdk.incubator.vector module is available.
+ **/
+class WindowEvaluator implements Evaluator {
+
+	// one mask per run of five cells
+	static final long[] WINDOWS = new long[FastBoard.RUNS];
+
+	static {
+		if (!TableFile.read(TableFile.WINDOWS, WINDOWS))
+			buildWindows();
+	}
+
+	static void buildWindows() {
+		Arrays.fill(WINDOWS, 0);
+		for (int run = 0; run < FastBoard.RUNS; run++) {
+			for (int cell : FastBoard.RUN_CELLS[run]) {
+				WINDOWS[run] |= 1L << cell;
+			}
+		}
+	}
+
+	long white;
+	long black;
+
+	/**
+	 * @return the vector evaluator if the module is present, else this scalar one
+	 */
+	static WindowEvaluator create() {
+		try {
+			return (WindowEvaluator) Class.forName("VectorWindowEvaluator").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return new WindowEvaluator();
+		}
+	}
+
+	public Evaluator copy() {
+		try {
+			return getClass().getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			return new WindowEvaluator();
+		}
+	}
+
+	public void reset(LineCache lines) {
+		white = (lines == null) ? 0 : lines.white;
+		black = (lines == null) ? 0 : lines.black;
+	}
+
+	public void makeMove(int cell, int code) {
+		if (code == LineCache.WHITE)
+			white |= 1L << cell;
+		else
+			black |= 1L << cell;
+	}
+
+	public void unmakeMove(int cell, int code) {
+		white &= ~(1L << cell);
+		black &= ~(1L << cell);
+	}
+
+	public int evaluate() {
+		return evaluate(white, black);
+	}
+
+	public void evaluateChildren(int[] cells, int count, int code, int[] scores) {
+		for (int i = 0; i < count; i++) {
+			long bit = 1L << cells[i];
+			scores[i] = (code == LineCache.WHITE) ? evaluate(white | bit, black) : evaluate(white, black | bit);
+		}
+	}
+
+	int evaluate(long white, long black) {
+		int[] weights = LineCache.WEIGHTS;
+		int score = 0;
+		for (long window : WINDOWS) {
+			int own = Long.bitCount(white & window);
+			int opp = Long.bitCount(black & window);
+			if (opp == 0 && own >= 2)
+				score += weights[5 - own];
+			else if (own == 0 && opp >= 2)
+				score -= weights[5 - opp];
+		}
+		return score;
+	}
+
+} // end WindowEvaluator class
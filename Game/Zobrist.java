@@ -0,0 +1,110 @@
+import java.awt.Color;
+
+/**
+ * Random keys for hashing board positions, a position's hash is the xor of
+ * the keys of every stone on it so a move updates it with a single xor.
+ **/
+class Zobrist {
+
+	// keys indexed by LineCache stone code (BLACK or WHITE) and cell
+	static final long[][] KEYS = new long[3][64];
+	// xored into the hash of a position with black to move, for search tables
+	static final long BLACK_TO_MOVE = mix(0x2545F4914F6CDD1DL);
+	// where each cell goes under the 8 rotations and reflections of the board
+	static final int[][] SYMMETRY = new int[8][64];
+
+	static {
+		if (!TableFile.read(TableFile.SYMMETRY, SYMMETRY))
+			buildSymmetry();
+		if (!TableFile.read(TableFile.ZOBRIST, KEYS))
+			buildKeys();
+	}
+
+	static void buildSymmetry() {
+		for (int row = 0; row < 8; row++) {
+			for (int col = 0; col < 8; col++) {
+				int[][] images = { { row, col }, { col, 7 - row }, { 7 - row, 7 - col }, { 7 - col, row },
+						{ row, 7 - col }, { 7 - row, col }, { col, row }, { 7 - col, 7 - row } };
+				for (int s = 0; s < 8; s++) {
+					SYMMETRY[s][row * 8 + col] = images[s][0] * 8 + images[s][1];
+				}
+			}
+		}
+	}
+
+	static void buildKeys() {
+		// fixed seed so hashes are stable between runs
+		long seed = 0x9E3779B97F4A7C15L;
+		for (int code = LineCache.BLACK; code <= LineCache.WHITE; code++) {
+			for (int cell = 0; cell < 64; cell++) {
+				seed += 0x9E3779B97F4A7C15L;
+				KEYS[code][cell] = mix(seed);
+			}
+		}
+	}
+
+	// splitmix64 finaliser
+	static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	static long key(int cell, Color colour) {
+		return KEYS[LineCache.code(colour)][cell];
+	}
+
+	/**
+	 * Hash that is the same for all 8 symmetric versions of a position, the
+	 * smallest of the hashes of its images
+	 */
+	static long canonical(long white, long black) {
+		return image(white, black, canonicalSymmetry(white, black));
+	}
+
+	/**
+	 * @return the symmetry taking the position to the image with the canonical hash
+	 */
+	static int canonicalSymmetry(long white, long black) {
+		long best = Long.MAX_VALUE;
+		int symmetry = 0;
+		for (int s = 0; s < 8; s++) {
+			long hash = image(white, black, s);
+			if (hash < best) {
+				best = hash;
+				symmetry = s;
+			}
+		}
+		return symmetry;
+	}
+
+	/**
+	 * @return the hash of the position after symmetry s
+	 */
+	static long image(long white, long black, int s) {
+		long hash = 0;
+		for (long bits = white; bits != 0; bits &= bits - 1) {
+			hash ^= KEYS[LineCache.WHITE][SYMMETRY[s][Long.numberOfTrailingZeros(bits)]];
+		}
+		for (long bits = black; bits != 0; bits &= bits - 1) {
+			hash ^= KEYS[LineCache.BLACK][SYMMETRY[s][Long.numberOfTrailingZeros(bits)]];
+		}
+		return hash;
+	}
+
+	/**
+	 * Hashes a whole board, for callers that do not keep an incremental hash
+	 */
+	static long hash(Color[][] board) {
+		long hash = 0;
+		for (int row = 0; row < GomokuBoard.ROWS; row++) {
+			for (int col = 0; col < GomokuBoard.COLS; col++) {
+				if (board[row][col] != null) {
+					hash ^= key(row * 8 + col, board[row][col]);
+				}
+			}
+		}
+		return hash;
+	}
+
+} // end Zobrist class
@@ -0,0 +1,47 @@
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * WindowEvaluator using the incubating Vector API, counting the stones in
+ * as many windows as the CPU has long lanes with each instruction. Kept in
+ * its own directory because it needs the jdk.incubator.vector module to
+ * compile and run:
+ * 
+ *   javac --add-modules jdk.incubator.vector -cp . vector/VectorWindowEvaluator.java -d .
+ *   java --add-modules jdk.incubator.vector ...
+ * 
+ * WindowEvaluator.create falls back to the scalar version without it.
+ **/
+class VectorWindowEvaluator extends WindowEvaluator {
+
+	static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+	// popcount of every lane, there is no lanewise bit count before JDK 19
+	static LongVector bitCount(LongVector x) {
+		x = x.sub(x.lanewise(VectorOperators.LSHR, 1).and(0x5555555555555555L));
+		x = x.and(0x3333333333333333L).add(x.lanewise(VectorOperators.LSHR, 2).and(0x3333333333333333L));
+		x = x.add(x.lanewise(VectorOperators.LSHR, 4)).and(0x0F0F0F0F0F0F0F0FL);
+		return x.mul(0x0101010101010101L).lanewise(VectorOperators.LSHR, 56);
+	}
+
+	int evaluate(long white, long black) {
+		int[] weights = LineCache.WEIGHTS;
+		LongVector score = LongVector.zero(SPECIES);
+		// WINDOWS.length is a multiple of every lane count
+		for (int i = 0; i < WINDOWS.length; i += SPECIES.length()) {
+			LongVector windows = LongVector.fromArray(SPECIES, WINDOWS, i);
+			LongVector own = bitCount(windows.and(white));
+			LongVector opp = bitCount(windows.and(black));
+			VectorMask<Long> ownOnly = opp.eq(0);
+			VectorMask<Long> oppOnly = own.eq(0);
+			for (int away = 0; away < 4; away++) {
+				score = score.add(weights[away], own.eq(5 - away).and(ownOnly));
+				score = score.sub(weights[away], opp.eq(5 - away).and(oppOnly));
+			}
+		}
+		return (int) score.reduceLanes(VectorOperators.ADD);
+	}
+
+} // end VectorWindowEvaluator class